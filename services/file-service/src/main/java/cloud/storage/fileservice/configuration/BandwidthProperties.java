@@ -0,0 +1,24 @@
+package cloud.storage.fileservice.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Component
+@ConfigurationProperties(prefix = "spring.storage.bandwidth")
+@Getter
+@Setter
+public class BandwidthProperties {
+    private boolean enabled = false; // ограничивать скорость передачи по пользователям
+    private long userRate = 50L * 1024 * 1024; // байт/с на пользователя в каждую сторону, если у него нет тарифа
+    private long burst = 4L * 1024 * 1024; // сколько байт можно передать сразу после простоя
+    private long globalRate = 0; // байт/с на узел в каждую сторону, делится между активными пользователями; 0 — без общего лимита
+    private Duration rebalanceInterval = Duration.ofSeconds(1); // как часто пересчитываются доли пользователей
+    private Map<String, Long> tiers = new HashMap<>(); // тариф -> байт/с
+    private Map<Long, String> userTiers = new HashMap<>(); // id пользователя -> тариф
+}
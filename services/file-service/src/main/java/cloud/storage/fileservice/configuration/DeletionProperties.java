@@ -0,0 +1,20 @@
+package cloud.storage.fileservice.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "spring.storage.deletion")
+@Getter
+@Setter
+public class DeletionProperties {
+    private Duration pollInterval = Duration.ofSeconds(1); // как часто обработчик проверяет очередь удаления объектов
+    private int batchSize = 1000; // записей за один захват (и ключей в одном DeleteObjects)
+    private Duration lease = Duration.ofMinutes(5); // захваченная, но не завершенная запись вернется в очередь через этот срок
+    private Duration initialBackoff = Duration.ofSeconds(5); // пауза перед повтором после первой ошибки, дальше удваивается
+    private Duration maxBackoff = Duration.ofHours(1); // верхняя граница паузы между повторами
+}
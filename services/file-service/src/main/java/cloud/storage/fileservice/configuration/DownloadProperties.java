@@ -0,0 +1,52 @@
+package cloud.storage.fileservice.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "spring.storage.download")
+@Getter
+@Setter
+public class DownloadProperties {
+    private boolean verifyChecksum = false; // сверять CRC32C при отдаче файла (при расхождении передача обрывается)
+    private long parallelThreshold = 64L * 1024 * 1024; // с какого объема отдаваемые байты читаются из S3 параллельными диапазонами
+    private long chunkSize = 8L * 1024 * 1024; // размер одного ranged GET
+    private int concurrency = 4; // одновременных GET на одно скачивание
+    private int readAhead = 8; // сколько диапазонов может быть прочитано вперед клиента: память на скачивание <= readAhead * chunkSize
+    private int archivePrefetch = 4; // сколько следующих файлов ZIP-архива папки читается из S3, пока пишется текущий
+    private long archivePrefetchBytes = 8L * 1024 * 1024; // заранее читаются только небольшие файлы, целиком и в сумме не больше этого объема
+    private boolean presignedRedirect = false; // отвечать на скачивание подписанной ссылкой на S3 (302) вместо отдачи через сервис
+    private Duration presignTtl = Duration.ofMinutes(5); // срок действия ссылки на скачивание
+    private List<String> proxyContentTypes = new ArrayList<>(); // типы (можно image/*), которые всегда отдаются через сервис
+
+    private Cache cache = new Cache();
+    private Compression compression = new Compression();
+
+    // Локальный дисковый кэш популярных объектов
+    @Getter
+    @Setter
+    public static class Cache {
+        private boolean enabled = false;
+        private String dir = System.getProperty("java.io.tmpdir") + "/cloud-storage-cache";
+        private long maxBytes = 10L * 1024 * 1024 * 1024; // суммарный объем кэша, сверх него вытесняются давно не читанные объекты
+        private long maxObjectSize = 1024L * 1024 * 1024; // объекты крупнее не кэшируются
+    }
+
+    // Сжатие текстовых файлов при отдаче (Accept-Encoding: gzip / deflate)
+    @Getter
+    @Setter
+    public static class Compression {
+        private boolean enabled = true;
+        private long minSize = 1024; // меньшие файлы не сжимаются: заголовки gzip съедят выигрыш
+        private long fastThreshold = 16L * 1024 * 1024; // с этого размера — самый быстрый уровень, чтобы CPU не стал узким местом
+        private int level = 6; // уровень для файлов меньше fastThreshold
+        private int poolSize = 16; // сколько свободных Deflater держится для переиспользования
+        private int bufferSize = 64 * 1024; // буфер чтения исходных байтов на одно скачивание
+    }
+}
@@ -0,0 +1,23 @@
+package cloud.storage.fileservice.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConfigurationProperties(prefix = "spring.storage.rendition")
+@Getter
+@Setter
+public class RenditionProperties {
+    private boolean enabled = true; // миниатюры изображений после загрузки
+    private List<Integer> sizes = new ArrayList<>(List.of(128, 512, 1024)); // длинная сторона миниатюр в пикселях
+    private int workers = 2; // потоков генерации
+    private int queueCapacity = 256; // сверх этого новые задачи отбрасываются, а не тормозят загрузку
+    private long maxSourceSize = 64L * 1024 * 1024; // изображения больше не обрабатываются
+    private Duration cacheMaxAge = Duration.ofDays(365); // миниатюра неизменна, клиент может хранить ее долго
+}
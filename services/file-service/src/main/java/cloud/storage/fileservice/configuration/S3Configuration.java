@@ -12,6 +12,7 @@ import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 import java.net.URI;
 import java.time.Duration;
@@ -26,10 +27,12 @@ public class S3Configuration {
     private String endpoint;
     private String region;
     private String bucket;
+    private boolean pathStyleAccess; // для локальных S3-совместимых хранилищ (MinIO и т.п.)
 
     @Bean
     public S3Client s3Client() throws Exception {
         return S3Client.builder()
+                .serviceConfiguration(serviceConfiguration())
                 .endpointOverride(new URI(endpoint))
                 .region(Region.of(region))
                 .credentialsProvider(StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)))
@@ -46,10 +49,29 @@ public class S3Configuration {
 
         return S3AsyncClient.builder()
                 .httpClient(httpClient)
+                .serviceConfiguration(serviceConfiguration())
                 .endpointOverride(new URI(endpoint))
                 .region(Region.of(region))
                 .credentialsProvider(StaticCredentialsProvider.create(
                         AwsBasicCredentials.create(accessKey, secretKey)))
                 .build();
     }
+
+    // Подпись ссылок, по которым клиент обращается к S3 напрямую
+    @Bean
+    public S3Presigner s3Presigner() throws Exception {
+        return S3Presigner.builder()
+                .serviceConfiguration(serviceConfiguration())
+                .endpointOverride(new URI(endpoint))
+                .region(Region.of(region))
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(accessKey, secretKey)))
+                .build();
+    }
+
+    private software.amazon.awssdk.services.s3.S3Configuration serviceConfiguration() {
+        return software.amazon.awssdk.services.s3.S3Configuration.builder()
+                .pathStyleAccessEnabled(pathStyleAccess)
+                .build();
+    }
 }
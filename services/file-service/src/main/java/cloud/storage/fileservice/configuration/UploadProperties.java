@@ -0,0 +1,28 @@
+package cloud.storage.fileservice.configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+@Component
+@ConfigurationProperties(prefix = "spring.storage.upload")
+@Getter
+@Setter
+public class UploadProperties {
+    private long singlePutThreshold = 16L * 1024 * 1024; // файлы до этого размера отправляются одним PutObject
+    private long partSize = 50L * 1024 * 1024; // размер части, когда размер файла заранее неизвестен
+    private long minPartSize = 8L * 1024 * 1024; // нижняя граница размера части для файлов известного размера
+    private int targetPartCount = 1000; // желаемое число частей: крупным файлам — крупные части
+    private int initialConcurrency = 4; // стартовое число параллельных частей одной загрузки
+    private int maxConcurrency = 16; // верхняя граница адаптивной параллельности
+    private int slabSize = 1024 * 1024; // размер одного буфера пула
+    private int poolMaxIdleSlabs = 128; // сколько свободных буферов пул хранит для переиспользования
+    private boolean directBuffers = false; // off-heap буферы вместо heap
+    private String stagingDir = System.getProperty("java.io.tmpdir") + "/cloud-storage-staging"; // прием байтов при асинхронной загрузке
+    private Duration sessionTtl = Duration.ofHours(24); // неактивная возобновляемая сессия удаляется после этого срока
+    private Duration presignTtl = Duration.ofHours(1); // срок действия подписанных ссылок на части
+    private long memoryBudget = 1024L * 1024 * 1024; // общий бюджет памяти на части всех загрузок
+}
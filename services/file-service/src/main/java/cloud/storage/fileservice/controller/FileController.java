@@ -2,15 +2,23 @@ package cloud.storage.fileservice.controller;
 
 import cloud.storage.fileservice.dto.requests.*;
 import cloud.storage.fileservice.dto.responses.*;
+import cloud.storage.fileservice.models.FileStatus;
 import cloud.storage.fileservice.services.FileService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.InputStreamResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
 import java.security.Principal;
 
 @RestController
@@ -20,6 +28,9 @@ public class FileController {
 
     private static final Logger log = LoggerFactory.getLogger(FileController.class);
 
+    // SHA-256 содержимого (hex), если клиент знает его заранее
+    private static final String CONTENT_SHA256_HEADER = "X-Content-SHA256";
+
     private final FileService fileService;
 
     /**
@@ -29,10 +40,49 @@ public class FileController {
     public ResponseEntity<UploadFileResponse> uploadFile(
             @RequestParam("file") MultipartFile file,
             @RequestParam(name = "folderId", required = false) Long folderId,
+            @RequestParam(name = "async", defaultValue = "false") boolean async,
+            @RequestHeader(name = CONTENT_SHA256_HEADER, required = false) String sha256,
             Principal principal
     ) {
         log.info("Request on uploading file by user {}", principal.getName());
-        return ResponseEntity.ok(fileService.uploadFile(new UploadFileRequest(file, folderId), principal));
+        return uploadResponse(fileService.uploadFile(new UploadFileRequest(file, folderId, async, sha256), principal));
+    }
+
+    /**
+     * Потоковая загрузка файла: тело запроса (application/octet-stream) отправляется в S3
+     * по мере поступления, без multipart-парсинга и временных файлов
+     */
+    @PostMapping("/upload/stream")
+    public ResponseEntity<UploadFileResponse> uploadFileStream(
+            @RequestParam("fileName") String fileName,
+            @RequestParam(name = "folderId", required = false) Long folderId,
+            @RequestParam(name = "async", defaultValue = "false") boolean async,
+            @RequestHeader(name = CONTENT_SHA256_HEADER, required = false) String sha256,
+            HttpServletRequest request,
+            Principal principal
+    ) throws IOException {
+        log.info("Request on stream uploading file by user {}", principal.getName());
+        return uploadResponse(fileService.uploadFileStream(new UploadFileStreamRequest(
+                request.getInputStream(),
+                fileName,
+                request.getContentType(),
+                request.getContentLengthLong(),
+                folderId,
+                async,
+                sha256
+        ), principal));
+    }
+
+    /**
+     * Статус и прогресс передачи файла в S3 (для асинхронной загрузки)
+     */
+    @GetMapping("/status/{fileId}")
+    public ResponseEntity<UploadStatusResponse> getUploadStatus(
+            @PathVariable Long fileId,
+            Principal principal
+    ) {
+        log.info("Request on upload status of file id={} by user {}", fileId, principal.getName());
+        return ResponseEntity.ok(fileService.getUploadStatus(fileId, principal));
     }
 
     /**
@@ -83,36 +133,180 @@ public class FileController {
         return ResponseEntity.ok(fileService.deleteFile(new DeleteFileRequest(fileId), principal));
     }
 
+    /**
+     * Удаление нескольких файлов одним запросом; результат — по каждому id
+     */
+    @PostMapping("/delete")
+    public ResponseEntity<DeleteFilesResponse> deleteFiles(
+            @RequestBody DeleteFilesRequest request,
+            Principal principal
+    ) {
+        log.info("Request on deleting {} files by user {}",
+                request.getFileIds() == null ? 0 : request.getFileIds().size(), principal.getName());
+        return ResponseEntity.ok(fileService.deleteFiles(request, principal));
+    }
+
     /**
      * Получение списка файлов в конкретной папке
      */
     @GetMapping("/{folderId}")
     public ResponseEntity<GetFilesInDirectoryResponse> getFiles(
             @PathVariable Long folderId,
+            WebRequest webRequest,
             Principal principal
     ) {
         log.info("Request on get files from folder {} by user {}", folderId, principal.getName());
-        return ResponseEntity.ok(fileService.getFiles(new GetFilesInDirectoryRequest(folderId), principal));
+        return filesResponse(new GetFilesInDirectoryRequest(folderId), webRequest, principal);
     }
 
     /**
      * Получение списка файлов из корневой папки
      */
     @GetMapping
-    public ResponseEntity<GetFilesInDirectoryResponse> getFiles(Principal principal) {
+    public ResponseEntity<GetFilesInDirectoryResponse> getFiles(WebRequest webRequest, Principal principal) {
         log.info("Request on get files from root folder by user {}", principal.getName());
-        return ResponseEntity.ok(fileService.getFiles(new GetFilesInDirectoryRequest(null), principal));
+        return filesResponse(new GetFilesInDirectoryRequest(null), webRequest, principal);
     }
 
     /**
-     * Скачивание файла
+     * Постраничный список файлов папки (без folderId — корневой). Сортировка: name, size или uploadedAt;
+     * следующая страница запрашивается с cursor из nextCursor предыдущей
+     */
+    @GetMapping("/list")
+    public ResponseEntity<ListFilesResponse> listFiles(
+            @RequestParam(name = "folderId", required = false) Long folderId,
+            @RequestParam(name = "sort", required = false) String sort,
+            @RequestParam(name = "direction", required = false) String direction,
+            @RequestParam(name = "limit", defaultValue = "100") int limit,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            Principal principal
+    ) {
+        log.info("Request on list files from folder {} by user {}", folderId == null ? "root" : folderId, principal.getName());
+        return ResponseEntity.ok(fileService.listFiles(new ListFilesRequest(folderId, sort, direction, limit, cursor), principal));
+    }
+
+    /**
+     * Полная выгрузка списка файлов папки одним JSON-массивом, который пишется в ответ по мере выборки
+     */
+    @GetMapping("/list/export")
+    public void exportFiles(
+            @RequestParam(name = "folderId", required = false) Long folderId,
+            @RequestParam(name = "sort", required = false) String sort,
+            @RequestParam(name = "direction", required = false) String direction,
+            HttpServletResponse response,
+            Principal principal
+    ) throws IOException {
+        log.info("Request on export files from folder {} by user {}", folderId == null ? "root" : folderId, principal.getName());
+        writeSynchronously(fileService.exportFiles(new ListFilesRequest(folderId, sort, direction, 0, null), principal), response);
+    }
+
+    /**
+     * Скачивание файла; с заголовком Range — только запрошенные диапазоны (206 Partial Content).
+     * В режиме presigned-redirect — 302 на подписанную ссылку S3
      */
     @GetMapping("/download/{fileId}")
     public ResponseEntity<InputStreamResource> download(
             @PathVariable Long fileId,
+            @RequestHeader(name = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(name = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(name = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince,
+            @RequestHeader(name = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
             Principal principal
     ) {
         log.info("Request on downloading file id={} by user {}", fileId, principal.getName());
-        return fileService.downloadFileResponse(fileId, principal);
+        return fileService.downloadFileResponse(
+                new DownloadFileRequest(fileId, range, ifRange, ifNoneMatch, ifModifiedSince, acceptEncoding), principal);
+    }
+
+    /**
+     * Миниатюра изображения: наименьшая готовая не меньше size пикселей по длинной стороне.
+     * 409 — миниатюры еще генерируются
+     */
+    @GetMapping("/thumbnail/{fileId}")
+    public ResponseEntity<InputStreamResource> getThumbnail(
+            @PathVariable Long fileId,
+            @RequestParam(name = "size", defaultValue = "256") int size,
+            Principal principal
+    ) {
+        log.info("Request on thumbnail of file id={} by user {}", fileId, principal.getName());
+        return fileService.getThumbnail(fileId, size, principal);
+    }
+
+    /**
+     * Подписанная ссылка на скачивание напрямую из S3 (режим presigned-redirect) в виде JSON
+     */
+    @GetMapping("/download/{fileId}/url")
+    public ResponseEntity<PresignedDownloadResponse> getDownloadUrl(
+            @PathVariable Long fileId,
+            Principal principal
+    ) {
+        log.info("Request on download url of file id={} by user {}", fileId, principal.getName());
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(fileService.getDownloadUrl(fileId, principal));
+    }
+
+    /**
+     * Неблокирующее скачивание: поток запроса освобождается сразу, байты из S3 пишутся в ответ
+     * по мере готовности сокета клиента. Поддерживает Range с одним диапазоном
+     */
+    @GetMapping("/download/{fileId}/stream")
+    public void downloadStream(
+            @PathVariable Long fileId,
+            @RequestHeader(name = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(name = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(name = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince,
+            HttpServletRequest request,
+            HttpServletResponse response,
+            Principal principal
+    ) throws IOException {
+        log.info("Request on stream downloading file id={} by user {}", fileId, principal.getName());
+        NonBlockingResponseWriter.write(
+                fileService.downloadFileStream(new DownloadFileRequest(fileId, range, ifRange, ifNoneMatch, ifModifiedSince, null), principal),
+                request,
+                response
+        );
+    }
+
+    /**
+     * ZIP-архив папки (с recursive=true — вместе с вложенными), который пишется в ответ по мере чтения файлов из S3
+     */
+    @GetMapping("/folder/{folderId}/archive")
+    public void downloadFolderArchive(
+            @PathVariable Long folderId,
+            @RequestParam(name = "recursive", defaultValue = "false") boolean recursive,
+            HttpServletResponse response,
+            Principal principal
+    ) throws IOException {
+        log.info("Request on downloading archive of folder {} by user {}", folderId, principal.getName());
+        writeSynchronously(
+                fileService.downloadFolderArchive(new DownloadFolderArchiveRequest(folderId, recursive), principal), response);
+    }
+
+    // Список папки с ETag по версиям файлов: при совпадении — 304 без выборки самого списка.
+    // checkNotModified сам выставляет ETag в ответ, и для 200, и для 304
+    private ResponseEntity<GetFilesInDirectoryResponse> filesResponse(GetFilesInDirectoryRequest request,
+                                                                      WebRequest webRequest, Principal principal) {
+        GetFilesInDirectoryResponse files = fileService.getFiles(request, webRequest::checkNotModified, principal);
+        if (files == null) return null;
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(files);
+    }
+
+    // Пишется в потоке запроса: у асинхронного StreamingResponseBody длительность ограничена таймаутом контейнера
+    private void writeSynchronously(ResponseEntity<StreamingResponseBody> body, HttpServletResponse response) throws IOException {
+        response.setStatus(body.getStatusCode().value());
+        body.getHeaders().forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        body.getBody().writeTo(response.getOutputStream());
+    }
+
+    // Асинхронно принятая загрузка отвечает 202 Accepted: файл еще передается в S3
+    private ResponseEntity<UploadFileResponse> uploadResponse(UploadFileResponse response) {
+        return response.getStatus() == FileStatus.PENDING
+                ? ResponseEntity.accepted().body(response)
+                : ResponseEntity.ok(response);
     }
 }
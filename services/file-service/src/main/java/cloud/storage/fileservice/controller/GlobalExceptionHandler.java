@@ -3,6 +3,7 @@ package cloud.storage.fileservice.controller;
 import cloud.storage.fileservice.customExceptions.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -53,12 +54,48 @@ public class GlobalExceptionHandler {
         return buildResponse(HttpStatus.NOT_FOUND, ex.getMessage());
     }
 
+    @ExceptionHandler(UploadSessionNotFoundException.class)
+    public ResponseEntity<Map<String, Object>> handleUploadSessionNotFound(UploadSessionNotFoundException ex) {
+        log.warn("Upload session not found at {}: {}", Instant.now(), ex.getMessage());
+        return buildResponse(HttpStatus.NOT_FOUND, ex.getMessage());
+    }
+
+    @ExceptionHandler(UploadSessionBusyException.class)
+    public ResponseEntity<Map<String, Object>> handleUploadSessionBusy(UploadSessionBusyException ex) {
+        log.warn("Upload session busy at {}: {}", Instant.now(), ex.getMessage());
+        return buildResponse(HttpStatus.CONFLICT, ex.getMessage());
+    }
+
+    @ExceptionHandler(FileNotAvailableException.class)
+    public ResponseEntity<Map<String, Object>> handleFileNotAvailable(FileNotAvailableException ex) {
+        log.warn("File not available at {}: {}", Instant.now(), ex.getMessage());
+        return buildResponse(HttpStatus.CONFLICT, ex.getMessage());
+    }
+
     @ExceptionHandler(AccessDeniedException.class)
     public ResponseEntity<Map<String, Object>> handleAccessDenied(AccessDeniedException ex) {
         log.warn("Access denied at {}: {}", Instant.now(), ex.getMessage());
         return buildResponse(HttpStatus.UNAUTHORIZED, ex.getMessage());
     }
 
+    @ExceptionHandler(InvalidListingRequestException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidListingRequest(InvalidListingRequestException ex) {
+        log.warn("Invalid listing request at {}: {}", Instant.now(), ex.getMessage());
+        return buildResponse(HttpStatus.BAD_REQUEST, ex.getMessage());
+    }
+
+    @ExceptionHandler(TooManyFilesException.class)
+    public ResponseEntity<Map<String, Object>> handleTooManyFiles(TooManyFilesException ex) {
+        log.warn("Too many files at {}: {}", Instant.now(), ex.getMessage());
+        return buildResponse(HttpStatus.BAD_REQUEST, ex.getMessage());
+    }
+
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Map<String, Object>> handleConcurrentModification(OptimisticLockingFailureException ex) {
+        log.warn("Concurrent modification at {}: {}", Instant.now(), ex.getMessage());
+        return buildResponse(HttpStatus.CONFLICT, "File was modified concurrently, retry the request");
+    }
+
     // ====================== НЕОЖИДАННЫЕ ОШИБКИ ======================
 
     @ExceptionHandler(S3UploadException.class)
@@ -0,0 +1,179 @@
+package cloud.storage.fileservice.controller;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Запись Flux<ByteBuffer> в ответ через неблокирующий вывод сервлета (WriteListener).
+ * Поток Tomcat освобождается сразу после startAsync; следующий буфер запрашивается у источника,
+ * только когда сокет клиента готов принять данные, поэтому медленный клиент не копит данные в памяти.
+ */
+final class NonBlockingResponseWriter implements WriteListener, AsyncListener {
+
+    private static final Logger log = LoggerFactory.getLogger(NonBlockingResponseWriter.class);
+
+    // Крупные буферы пишутся порциями, чтобы между ними проверять готовность сокета
+    private static final int WRITE_CHUNK = 64 * 1024;
+
+    private final AsyncContext asyncContext;
+    private final ServletOutputStream outputStream;
+    private final byte[] copyBuffer = new byte[WRITE_CHUNK];
+
+    private Subscription subscription;
+    private ByteBuffer pending;
+    private boolean requested;
+    private boolean upstreamCompleted;
+    private boolean finished;
+    private boolean listening; // isReady() допустим только после установки WriteListener
+
+    private NonBlockingResponseWriter(AsyncContext asyncContext, ServletOutputStream outputStream) {
+        this.asyncContext = asyncContext;
+        this.outputStream = outputStream;
+    }
+
+    static void write(ResponseEntity<Flux<ByteBuffer>> entity, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setStatus(entity.getStatusCode().value());
+        entity.getHeaders().forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        if (entity.getBody() == null) return;
+
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(0); // длительность передачи ограничивает клиент, а не таймаут контейнера
+        NonBlockingResponseWriter writer = new NonBlockingResponseWriter(asyncContext, response.getOutputStream());
+        asyncContext.addListener(writer);
+        entity.getBody().subscribe(writer.new Upstream());
+        // Контейнер сразу вызовет onWritePossible — оттуда уходит первый запрос к источнику
+        writer.outputStream.setWriteListener(writer);
+    }
+
+    // Подписчик на содержимое файла; все состояние защищено монитором writer-а
+    private final class Upstream implements Subscriber<ByteBuffer> {
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            synchronized (NonBlockingResponseWriter.this) {
+                subscription = s;
+                drain();
+            }
+        }
+
+        @Override
+        public void onNext(ByteBuffer buffer) {
+            synchronized (NonBlockingResponseWriter.this) {
+                pending = buffer;
+                requested = false;
+                drain();
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            synchronized (NonBlockingResponseWriter.this) {
+                upstreamCompleted = true;
+                drain();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            synchronized (NonBlockingResponseWriter.this) {
+                // Content-Length уже отправлен: незавершенный ответ клиент увидит как оборванную передачу
+                log.error("Ошибка при чтении файла из S3 во время отдачи: {}", throwable.getMessage());
+                finish();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void onWritePossible() {
+        listening = true;
+        drain();
+    }
+
+    // Клиент отключился во время записи
+    @Override
+    public synchronized void onError(Throwable throwable) {
+        abort(throwable);
+    }
+
+    private void drain() {
+        if (finished || !listening || subscription == null) return;
+        try {
+            while (outputStream.isReady()) {
+                if (pending != null) {
+                    writeChunk(pending);
+                    if (!pending.hasRemaining()) pending = null;
+                    continue;
+                }
+                if (upstreamCompleted) {
+                    finish();
+                    return;
+                }
+                if (!requested) {
+                    requested = true;
+                    subscription.request(1);
+                }
+                return;
+            }
+        } catch (IOException e) {
+            abort(e);
+        }
+    }
+
+    private void writeChunk(ByteBuffer buffer) throws IOException {
+        int length = Math.min(buffer.remaining(), WRITE_CHUNK);
+        if (buffer.hasArray()) {
+            outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+            buffer.position(buffer.position() + length);
+        } else {
+            buffer.get(copyBuffer, 0, length);
+            outputStream.write(copyBuffer, 0, length);
+        }
+    }
+
+    // Клиент отключился или контейнер прервал запрос — дальше из S3 не читаем
+    @Override
+    public synchronized void onError(AsyncEvent event) {
+        abort(event.getThrowable());
+    }
+
+    @Override
+    public synchronized void onTimeout(AsyncEvent event) {
+        abort(null);
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+    }
+
+    private void abort(Throwable cause) {
+        if (finished) return;
+        if (cause != null) log.debug("Отдача файла прервана: {}", cause.getMessage());
+        if (subscription != null) subscription.cancel();
+        finish();
+    }
+
+    private void finish() {
+        if (finished) return;
+        finished = true;
+        pending = null;
+        asyncContext.complete();
+    }
+}
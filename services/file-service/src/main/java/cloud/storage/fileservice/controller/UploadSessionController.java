@@ -0,0 +1,121 @@
+package cloud.storage.fileservice.controller;
+
+import cloud.storage.fileservice.dto.requests.InitUploadSessionRequest;
+import cloud.storage.fileservice.dto.requests.UploadSessionPartRequest;
+import cloud.storage.fileservice.dto.responses.*;
+import cloud.storage.fileservice.services.UploadSessionService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/file/upload/session")
+@RequiredArgsConstructor
+public class UploadSessionController {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadSessionController.class);
+
+    private final UploadSessionService uploadSessionService;
+
+    /**
+     * Создание сессии возобновляемой загрузки: возвращает размер и количество частей
+     */
+    @PostMapping
+    public ResponseEntity<InitUploadSessionResponse> initSession(
+            @RequestBody InitUploadSessionRequest request,
+            Principal principal
+    ) {
+        log.info("Request on init upload session by user {}", principal.getName());
+        return ResponseEntity.ok(uploadSessionService.initSession(request, principal));
+    }
+
+    /**
+     * Создание сессии прямой загрузки: части отправляются клиентом в S3 по подписанным ссылкам.
+     * Бакет должен разрешать CORS-запросы PUT и отдавать заголовок ETag
+     */
+    @PostMapping("/direct")
+    public ResponseEntity<InitDirectUploadResponse> initDirectSession(
+            @RequestBody InitUploadSessionRequest request,
+            Principal principal
+    ) {
+        log.info("Request on init direct upload session by user {}", principal.getName());
+        return ResponseEntity.ok(uploadSessionService.initDirectSession(request, principal));
+    }
+
+    /**
+     * Новые подписанные ссылки на части прямой загрузки (для оставшихся частей или взамен истекших)
+     */
+    @GetMapping("/{sessionId}/urls")
+    public ResponseEntity<List<PresignedPartResponse>> presignParts(
+            @PathVariable String sessionId,
+            @RequestParam(defaultValue = "1") int from,
+            @RequestParam(defaultValue = "1000") int count,
+            Principal principal
+    ) {
+        log.info("Request on presigned part urls of session {} by user {}", sessionId, principal.getName());
+        return ResponseEntity.ok(uploadSessionService.presignParts(sessionId, from, count, principal));
+    }
+
+    /**
+     * Загрузка одной части (тело запроса — байты части); части можно отправлять параллельно и повторно
+     */
+    @PutMapping("/{sessionId}/part/{partNumber}")
+    public ResponseEntity<UploadSessionPartResponse> uploadPart(
+            @PathVariable String sessionId,
+            @PathVariable int partNumber,
+            HttpServletRequest request,
+            Principal principal
+    ) throws IOException {
+        log.info("Request on upload part {} of session {} by user {}", partNumber, sessionId, principal.getName());
+        return ResponseEntity.ok(uploadSessionService.uploadPart(new UploadSessionPartRequest(
+                sessionId,
+                partNumber,
+                request.getInputStream(),
+                request.getContentLengthLong()
+        ), principal));
+    }
+
+    /**
+     * Состояние сессии: загруженные части и непрерывное смещение для возобновления
+     */
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<UploadSessionStatusResponse> getSession(
+            @PathVariable String sessionId,
+            Principal principal
+    ) {
+        log.info("Request on upload session {} status by user {}", sessionId, principal.getName());
+        return ResponseEntity.ok(uploadSessionService.getSession(sessionId, principal));
+    }
+
+    /**
+     * Завершение загрузки: сборка объекта в S3 и сохранение метаданных
+     */
+    @PostMapping("/{sessionId}/complete")
+    public ResponseEntity<UploadFileResponse> completeSession(
+            @PathVariable String sessionId,
+            Principal principal
+    ) {
+        log.info("Request on complete upload session {} by user {}", sessionId, principal.getName());
+        return ResponseEntity.ok(uploadSessionService.completeSession(sessionId, principal));
+    }
+
+    /**
+     * Отмена загрузки
+     */
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<Void> abortSession(
+            @PathVariable String sessionId,
+            Principal principal
+    ) {
+        log.info("Request on abort upload session {} by user {}", sessionId, principal.getName());
+        uploadSessionService.abortSession(sessionId, principal);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,11 @@
+package cloud.storage.fileservice.customExceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidListingRequestException extends RuntimeException {
+    public InvalidListingRequestException(String message) {
+        super(message);
+    }
+}
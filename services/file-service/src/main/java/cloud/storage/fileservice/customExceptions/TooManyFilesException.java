@@ -0,0 +1,11 @@
+package cloud.storage.fileservice.customExceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class TooManyFilesException extends RuntimeException {
+    public TooManyFilesException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package cloud.storage.fileservice.customExceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class UploadSessionBusyException extends RuntimeException {
+    public UploadSessionBusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,14 @@
+package cloud.storage.fileservice.dto.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeleteFilesRequest {
+    private List<Long> fileIds;
+}
@@ -7,4 +7,9 @@ import lombok.Data;
 @AllArgsConstructor
 public class DownloadFileRequest {
     private Long fileId;
+    private String range; // заголовок Range, null — файл целиком
+    private String ifRange; // заголовок If-Range: Range учитывается, только если файл не изменился
+    private String ifNoneMatch; // заголовок If-None-Match: совпадение с ETag — 304 без обращения к S3
+    private String ifModifiedSince; // заголовок If-Modified-Since: учитывается, только если нет If-None-Match
+    private String acceptEncoding; // заголовок Accept-Encoding: текстовые файлы целиком отдаются сжатыми
 }
@@ -0,0 +1,11 @@
+package cloud.storage.fileservice.dto.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class DownloadFolderArchiveRequest {
+    private Long folderId;
+    private boolean recursive; // включать вложенные папки
+}
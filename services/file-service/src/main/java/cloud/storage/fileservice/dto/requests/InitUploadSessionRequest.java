@@ -0,0 +1,13 @@
+package cloud.storage.fileservice.dto.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class InitUploadSessionRequest {
+    private String fileName;
+    private Long folderId;
+    private Long size; // полный размер файла в байтах
+    private String contentType;
+}
@@ -0,0 +1,14 @@
+package cloud.storage.fileservice.dto.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class ListFilesRequest {
+    private Long folderId; // null — корневая папка
+    private String sort; // name, size или uploadedAt
+    private String direction; // asc или desc
+    private int limit; // размер страницы
+    private String cursor; // nextCursor предыдущей страницы; null — первая страница
+}
@@ -9,4 +9,6 @@ import org.springframework.web.multipart.MultipartFile;
 public class UploadFileRequest {
     private MultipartFile file;
     private Long folderId;
+    private boolean async; // вернуть ответ сразу после приема байтов, передача в S3 — в фоне
+    private String sha256; // SHA-256 содержимого от клиента (необязательно): уже загруженное содержимое не передается повторно
 }
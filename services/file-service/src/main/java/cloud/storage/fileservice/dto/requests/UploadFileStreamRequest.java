@@ -0,0 +1,18 @@
+package cloud.storage.fileservice.dto.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.InputStream;
+
+@Data
+@AllArgsConstructor
+public class UploadFileStreamRequest {
+    private InputStream body; // тело запроса, читается по мере поступления
+    private String fileName;
+    private String contentType;
+    private long contentLength; // -1 если клиент не передал Content-Length
+    private Long folderId;
+    private boolean async; // вернуть ответ сразу после приема байтов, передача в S3 — в фоне
+    private String sha256; // SHA-256 содержимого от клиента (необязательно): уже загруженное содержимое не передается повторно
+}
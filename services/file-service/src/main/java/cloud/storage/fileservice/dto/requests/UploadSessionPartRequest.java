@@ -0,0 +1,15 @@
+package cloud.storage.fileservice.dto.requests;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.io.InputStream;
+
+@Data
+@AllArgsConstructor
+public class UploadSessionPartRequest {
+    private String sessionId;
+    private int partNumber;
+    private InputStream body;
+    private long contentLength;
+}
@@ -0,0 +1,21 @@
+package cloud.storage.fileservice.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class DeleteFilesResponse {
+    private int deletedCount;
+    private List<Result> results; // по одному элементу на каждый запрошенный id, в порядке запроса
+
+    @Data
+    @AllArgsConstructor
+    public static class Result {
+        private Long fileId;
+        private boolean deleted; // строка файла удалена
+        private String error; // причина, если не удален
+    }
+}
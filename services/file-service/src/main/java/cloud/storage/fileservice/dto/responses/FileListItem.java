@@ -0,0 +1,21 @@
+package cloud.storage.fileservice.dto.responses;
+
+import cloud.storage.fileservice.models.FileStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Строка списка файлов; выбирается конструктором прямо в JPQL, без загрузки сущностей File
+ */
+@Data
+@AllArgsConstructor
+public class FileListItem {
+    private Long id;
+    private String name;
+    private Long size;
+    private String contentType;
+    private FileStatus status;
+    private LocalDateTime uploadedAt;
+}
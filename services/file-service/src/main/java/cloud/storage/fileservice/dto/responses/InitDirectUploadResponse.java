@@ -0,0 +1,17 @@
+package cloud.storage.fileservice.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class InitDirectUploadResponse {
+    private String sessionId;
+    private long partSize;
+    private int partCount;
+    private LocalDateTime expiresAt;
+    private List<PresignedPartResponse> parts; // ссылки на первые части, остальные — через /urls
+}
@@ -0,0 +1,15 @@
+package cloud.storage.fileservice.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class InitUploadSessionResponse {
+    private String sessionId;
+    private long partSize;
+    private int partCount;
+    private LocalDateTime expiresAt;
+}
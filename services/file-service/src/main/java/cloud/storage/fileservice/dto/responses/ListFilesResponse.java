@@ -0,0 +1,13 @@
+package cloud.storage.fileservice.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class ListFilesResponse {
+    private List<FileListItem> files;
+    private String nextCursor; // передается в cursor для следующей страницы; null — это последняя страница
+}
@@ -0,0 +1,13 @@
+package cloud.storage.fileservice.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+public class PresignedDownloadResponse {
+    private String url; // GET по этой ссылке скачивает файл напрямую из S3
+    private Instant expiresAt; // после этого момента ссылка недействительна
+}
@@ -0,0 +1,12 @@
+package cloud.storage.fileservice.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class PresignedPartResponse {
+    private int partNumber;
+    private long size; // ожидаемый размер части
+    private String url; // PUT по этой ссылке загружает часть напрямую в S3
+}
@@ -1,5 +1,6 @@
 package cloud.storage.fileservice.dto.responses;
 
+import cloud.storage.fileservice.models.FileStatus;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -7,4 +8,6 @@ import lombok.Data;
 @AllArgsConstructor
 public class UploadFileResponse {
     private boolean isSuccess;
+    private Long fileId;
+    private FileStatus status;
 }
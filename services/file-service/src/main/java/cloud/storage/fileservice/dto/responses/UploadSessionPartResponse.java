@@ -0,0 +1,11 @@
+package cloud.storage.fileservice.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class UploadSessionPartResponse {
+    private int partNumber;
+    private long size;
+}
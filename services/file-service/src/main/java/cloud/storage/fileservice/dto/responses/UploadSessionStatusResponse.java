@@ -0,0 +1,19 @@
+package cloud.storage.fileservice.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class UploadSessionStatusResponse {
+    private String sessionId;
+    private long totalSize;
+    private long partSize;
+    private int partCount;
+    private List<Integer> uploadedParts; // номера уже загруженных частей
+    private long offset; // байты, загруженные непрерывно с начала файла
+    private LocalDateTime expiresAt;
+}
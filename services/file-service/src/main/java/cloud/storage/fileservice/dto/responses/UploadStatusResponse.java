@@ -0,0 +1,14 @@
+package cloud.storage.fileservice.dto.responses;
+
+import cloud.storage.fileservice.models.FileStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class UploadStatusResponse {
+    private Long fileId;
+    private FileStatus status;
+    private long transferredBytes; // сколько байт уже передано в S3
+    private long totalBytes;
+}
@@ -0,0 +1,37 @@
+package cloud.storage.fileservice.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+@Table(name = "blobs")
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+public class Blob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(length = 64, unique = true)
+    private String sha256; // SHA-256 содержимого (hex); null — хэш неизвестен (загрузка частями через сессию)
+
+    @Column(name = "s3_key", nullable = false, length = 1024, unique = true)
+    private String s3Key; // Ключ объекта в S3
+
+    @Column(nullable = false)
+    private Long size; // Размер объекта в байтах
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount; // Сколько строк files ссылается на объект
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now(ZoneOffset.UTC);
+}
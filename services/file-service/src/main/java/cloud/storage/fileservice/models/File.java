@@ -6,7 +6,12 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 
-@Table(name = "files")
+// Индексы под варианты сортировки списка папки (FileSort): страница читается из индекса по диапазону, без сортировки
+@Table(name = "files", indexes = {
+        @Index(name = "idx_files_user_folder_name", columnList = "user_id, folder_id, name, id"),
+        @Index(name = "idx_files_user_folder_size", columnList = "user_id, folder_id, size, id"),
+        @Index(name = "idx_files_user_folder_uploaded_at", columnList = "user_id, folder_id, uploaded_at, id")
+})
 @Entity
 @AllArgsConstructor
 @NoArgsConstructor
@@ -22,8 +27,8 @@ public class File {
     @Column(nullable = false, length = 255)
     private String name; // Имя файла
 
-    @Column(name = "s3_key", nullable = false, length = 1024, unique = true)
-    private String s3Key; // Ключ файла в S3
+    @Column(name = "s3_key", nullable = false, length = 1024)
+    private String s3Key; // Ключ файла в S3 (у копий и одинакового содержимого общий)
 
     @Column(nullable = false)
     private Long size; // Размер файла в байтах
@@ -31,11 +36,27 @@ public class File {
     @Column(name = "content_type", length = 255)
     private String contentType; // MIME-тип
 
+    @Column(name = "checksum_crc32c", length = 16)
+    private String checksumCrc32c; // CRC32C всего содержимого (base64); null — сумма неизвестна
+
     @CreationTimestamp
     @Column(name = "uploaded_at", nullable = false, updatable = false)
     @Builder.Default
     private LocalDateTime uploadedAt = LocalDateTime.now(ZoneOffset.UTC); // Дата загрузки
 
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    @Builder.Default
+    private FileStatus status = FileStatus.AVAILABLE; // Состояние передачи в S3
+
+    @Version
+    @Column(nullable = false)
+    private long version; // Растет при каждом изменении строки: из него строится ETag списка файлов папки
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "blob_id", foreignKey = @ForeignKey(name = "fk_files_blob_id"))
+    private Blob blob; // Общий объект в S3; null — объект принадлежит только этому файлу
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false, foreignKey = @ForeignKey(name = "fk_files_user_id"))
     private User user;
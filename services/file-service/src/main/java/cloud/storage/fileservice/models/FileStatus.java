@@ -0,0 +1,7 @@
+package cloud.storage.fileservice.models;
+
+public enum FileStatus {
+    PENDING,   // байты приняты сервисом, передача в S3 идет в фоне
+    AVAILABLE, // объект в S3, файл можно скачивать
+    FAILED     // передача в S3 не удалась
+}
@@ -0,0 +1,45 @@
+package cloud.storage.fileservice.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Запись outbox: объект S3, который нужно удалить. Пишется в одной транзакции с удалением строк,
+ * которые на него ссылались, и удаляется фоновым обработчиком после успешного удаления объекта
+ */
+@Table(name = "object_deletions", indexes = {
+        @Index(name = "idx_object_deletions_next_attempt_at", columnList = "next_attempt_at")
+})
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+public class ObjectDeletion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "s3_key", nullable = false, length = 1024)
+    private String s3Key;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now(ZoneOffset.UTC);
+
+    @Column(name = "next_attempt_at", nullable = false)
+    @Builder.Default
+    private LocalDateTime nextAttemptAt = LocalDateTime.now(ZoneOffset.UTC); // раньше этого времени запись не берется в работу
+
+    @Column(nullable = false)
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "last_error", length = 1024)
+    private String lastError;
+}
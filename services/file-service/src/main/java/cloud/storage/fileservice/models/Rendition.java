@@ -0,0 +1,43 @@
+package cloud.storage.fileservice.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+@Table(name = "renditions", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_renditions_file_size", columnNames = {"file_id", "size"})
+})
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+public class Rendition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "file_id", nullable = false, foreignKey = @ForeignKey(name = "fk_renditions_file_id"))
+    private File file;
+
+    @Column(nullable = false)
+    private Integer size; // Длинная сторона миниатюры в пикселях
+
+    @Column(name = "s3_key", nullable = false, length = 1024)
+    private String s3Key; // Производный объект в S3
+
+    @Column(name = "content_type", nullable = false, length = 255)
+    private String contentType;
+
+    @Column(name = "byte_size", nullable = false)
+    private Long byteSize;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now(ZoneOffset.UTC);
+}
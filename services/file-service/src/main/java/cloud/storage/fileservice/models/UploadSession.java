@@ -0,0 +1,72 @@
+package cloud.storage.fileservice.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+@Table(name = "upload_sessions", indexes = {
+        @Index(name = "idx_upload_sessions_expires_at", columnList = "expires_at")
+})
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+public class UploadSession {
+
+    @Id
+    @Column(length = 36)
+    private String id; // UUID сессии, выдается клиенту
+
+    @Column(name = "file_name", nullable = false, length = 255)
+    private String fileName;
+
+    @Column(name = "content_type", length = 255)
+    private String contentType;
+
+    @Column(name = "total_size", nullable = false)
+    private Long totalSize; // Заявленный размер файла в байтах
+
+    @Column(name = "part_size", nullable = false)
+    private Long partSize; // Размер каждой части, кроме последней
+
+    @Column(name = "s3_key", nullable = false, length = 1024)
+    private String s3Key;
+
+    @Column(name = "upload_id", nullable = false, length = 1024)
+    private String uploadId; // Идентификатор multipart upload в S3
+
+    @Column(nullable = false)
+    @Builder.Default
+    private boolean direct = false; // Части загружаются клиентом напрямую в S3 по подписанным ссылкам
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now(ZoneOffset.UTC);
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt; // Продлевается при каждой загруженной части
+
+    @Column(name = "claimed_until")
+    private LocalDateTime claimedUntil; // Сессию завершает или прерывает другой запрос; null — свободна
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false, foreignKey = @ForeignKey(name = "fk_upload_sessions_user_id"))
+    private User user;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "folder_id", foreignKey = @ForeignKey(name = "fk_upload_sessions_folder_id"))
+    private Folder folder;
+
+    public int getPartCount() {
+        return (int) ((totalSize + partSize - 1) / partSize);
+    }
+
+    // Ожидаемый размер части: все части равны partSize, кроме последней
+    public long expectedPartSize(int partNumber) {
+        return partNumber < getPartCount() ? partSize : totalSize - partSize * (getPartCount() - 1);
+    }
+}
@@ -0,0 +1,33 @@
+package cloud.storage.fileservice.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+@Table(name = "upload_session_parts", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_upload_session_parts_session_part", columnNames = {"session_id", "part_number"})
+})
+@Entity
+@AllArgsConstructor
+@NoArgsConstructor
+@Getter
+@Setter
+@Builder
+public class UploadSessionPart {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "session_id", nullable = false, foreignKey = @ForeignKey(name = "fk_upload_session_parts_session_id"))
+    private UploadSession session;
+
+    @Column(name = "part_number", nullable = false)
+    private Integer partNumber;
+
+    @Column(name = "e_tag", nullable = false, length = 255)
+    private String eTag; // ETag части, нужен для завершения multipart upload
+
+    @Column(nullable = false)
+    private Long size;
+}
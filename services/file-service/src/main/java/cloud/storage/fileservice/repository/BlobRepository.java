@@ -0,0 +1,58 @@
+package cloud.storage.fileservice.repository;
+
+import cloud.storage.fileservice.models.Blob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface BlobRepository extends JpaRepository<Blob, Long> {
+
+    // Атомарно: новый объект регистрируется, для уже известного содержимого увеличивается счетчик ссылок
+    @Transactional
+    @Query(value = """
+            INSERT INTO blobs (sha256, s3_key, size, ref_count, created_at)
+            VALUES (:sha256, :s3Key, :size, 1, now() AT TIME ZONE 'UTC')
+            ON CONFLICT (sha256) DO UPDATE SET ref_count = blobs.ref_count + 1
+            RETURNING id
+            """, nativeQuery = true)
+    Long upsertReference(@Param("sha256") String sha256, @Param("s3Key") String s3Key, @Param("size") long size);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Blob b SET b.refCount = b.refCount + 1 WHERE b.id = :id")
+    int incrementReferences(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Blob b SET b.refCount = b.refCount - 1 WHERE b.id = :id")
+    int decrementReferences(@Param("id") Long id);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Blob b WHERE b.id = :id AND b.refCount <= 0")
+    int deleteIfUnreferenced(@Param("id") Long id);
+
+    // Одним запросом для пачки файлов: у blob-а счетчик уменьшается на число ссылающихся на него файлов из списка
+    @Modifying
+    @Transactional
+    @Query(value = """
+            UPDATE blobs b SET ref_count = b.ref_count - d.refs
+            FROM (SELECT blob_id, COUNT(*) AS refs FROM files
+                  WHERE id IN (:fileIds) AND blob_id IS NOT NULL GROUP BY blob_id) d
+            WHERE b.id = d.blob_id
+            """, nativeQuery = true)
+    int decrementReferencesOfFiles(@Param("fileIds") Collection<Long> fileIds);
+
+    @Query("SELECT b.s3Key FROM Blob b WHERE b.id IN :ids AND b.refCount <= 0")
+    List<String> findUnreferencedKeys(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM Blob b WHERE b.id IN :ids AND b.refCount <= 0")
+    int deleteUnreferenced(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,17 @@
+package cloud.storage.fileservice.repository;
+
+import cloud.storage.fileservice.dto.responses.FileListItem;
+import cloud.storage.fileservice.models.Folder;
+import cloud.storage.fileservice.models.User;
+
+import java.util.List;
+
+public interface FileListingRepository {
+
+    /**
+     * Страница файлов папки (keyset): строки строго после (afterKey, afterId) в заданном порядке.
+     * afterId == null — первая страница. Стоимость не зависит от номера страницы, в отличие от OFFSET
+     */
+    List<FileListItem> findPage(User user, Folder folder, FileSort sort, boolean descending,
+                                Object afterKey, Long afterId, int limit);
+}
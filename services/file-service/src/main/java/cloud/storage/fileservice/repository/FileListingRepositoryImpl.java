@@ -0,0 +1,46 @@
+package cloud.storage.fileservice.repository;
+
+import cloud.storage.fileservice.dto.responses.FileListItem;
+import cloud.storage.fileservice.models.Folder;
+import cloud.storage.fileservice.models.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+public class FileListingRepositoryImpl implements FileListingRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<FileListItem> findPage(User user, Folder folder, FileSort sort, boolean descending,
+                                       Object afterKey, Long afterId, int limit) {
+        String field = "f." + sort.property();
+        String after = descending ? "<" : ">";
+        StringBuilder jpql = new StringBuilder("SELECT new cloud.storage.fileservice.dto.responses.FileListItem(" +
+                "f.id, f.name, f.size, f.contentType, f.status, f.uploadedAt) FROM File f WHERE f.user = :user");
+        jpql.append(folder == null ? " AND f.folder IS NULL" : " AND f.folder = :folder");
+        if (afterId != null) {
+            // Первое условие избыточно, но дает планировщику границу диапазона индекса, а не фильтр по всей папке
+            jpql.append(" AND ").append(field).append(' ').append(after).append("= :afterKey")
+                    .append(" AND (").append(field).append(' ').append(after).append(" :afterKey")
+                    .append(" OR f.id ").append(after).append(" :afterId)");
+        }
+        String order = descending ? " DESC" : " ASC";
+        jpql.append(" ORDER BY ").append(field).append(order).append(", f.id").append(order);
+
+        TypedQuery<FileListItem> query = entityManager.createQuery(jpql.toString(), FileListItem.class)
+                .setParameter("user", user)
+                .setMaxResults(limit);
+        if (folder != null) query.setParameter("folder", folder);
+        if (afterId != null) {
+            query.setParameter("afterKey", afterKey);
+            query.setParameter("afterId", afterId);
+        }
+        return query.getResultList();
+    }
+}
@@ -1,15 +1,70 @@
 package cloud.storage.fileservice.repository;
 
+import cloud.storage.fileservice.models.Blob;
 import cloud.storage.fileservice.models.File;
+import cloud.storage.fileservice.models.FileStatus;
 import cloud.storage.fileservice.models.Folder;
 import cloud.storage.fileservice.models.User;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
 
-public interface FileRepository extends JpaRepository<File, Long> {
+public interface FileRepository extends JpaRepository<File, Long>, FileListingRepository {
     Optional<File> findFileById(Long id);
-    List<File> findFilesByFolder(Folder folder);
+
+    @Query("SELECT f.name, f.id FROM File f WHERE f.user = :user AND (f.folder = :folder OR (:folder IS NULL AND f.folder IS NULL))")
+    List<Object[]> findNamesAndIdsByFolder(@Param("user") User user, @Param("folder") Folder folder);
+
     boolean existsByNameAndFolderAndUser(String name, Folder folder, User user);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.status = :status, f.version = f.version + 1 WHERE f.id = :id")
+    int updateStatus(@Param("id") Long id, @Param("status") FileStatus status);
+
+    // Незавершенные асинхронные загрузки вместе с владельцем: после перезапуска их передача возобновляется
+    @Query("SELECT f FROM File f JOIN FETCH f.user WHERE f.status = :status")
+    List<File> findByStatusWithUser(@Param("status") FileStatus status);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE File f SET f.status = :status, f.blob = :blob, f.s3Key = :s3Key, f.checksumCrc32c = :checksum, f.version = f.version + 1 WHERE f.id = :id")
+    int completeUpload(@Param("id") Long id, @Param("blob") Blob blob, @Param("s3Key") String s3Key,
+                       @Param("checksum") String checksum, @Param("status") FileStatus status);
+
+    // Файлы из списка, принадлежащие пользователю: [id, s3Key, blob id (null — объект только этого файла)]
+    @Query("SELECT f.id, f.s3Key, b.id FROM File f LEFT JOIN f.blob b WHERE f.user = :user AND f.id IN :ids")
+    List<Object[]> findOwnedForDelete(@Param("user") User user, @Param("ids") Collection<Long> ids);
+
+    @Query("SELECT f.id FROM File f WHERE f.user = :user AND f.folder.id IN :folderIds ORDER BY f.id")
+    List<Long> findIdsInFolders(@Param("user") User user, @Param("folderIds") Collection<Long> folderIds, Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM File f WHERE f.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT f FROM File f WHERE f.user = :user AND f.folder.id IN :folderIds AND f.status = :status " +
+            "ORDER BY f.folder.id, f.name")
+    List<File> findInFolders(@Param("user") User user, @Param("folderIds") Collection<Long> folderIds,
+                             @Param("status") FileStatus status);
+
+    /**
+     * Состояние содержимого папки одним агрегатом: добавление или удаление меняет количество и сумму id,
+     * переименование и любое другое изменение строки — сумму версий. Возвращает [count, sum(id), sum(version)]
+     */
+    @Query("SELECT COUNT(f), COALESCE(SUM(f.id), 0), COALESCE(SUM(f.version), 0) FROM File f " +
+            "WHERE f.user = :user AND (f.folder = :folder OR (:folder IS NULL AND f.folder IS NULL))")
+    List<Object[]> folderState(@Param("user") User user, @Param("folder") Folder folder);
+
+    // Файл пользователя с тем же содержимым: повторная загрузка не нужна
+    @Query("SELECT f FROM File f JOIN FETCH f.blob b WHERE f.user = :user AND b.sha256 = :sha256")
+    List<File> findByUserAndContent(@Param("user") User user, @Param("sha256") String sha256, Pageable pageable);
 }
@@ -0,0 +1,49 @@
+package cloud.storage.fileservice.repository;
+
+import cloud.storage.fileservice.dto.responses.FileListItem;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Порядок списка файлов. Каждому варианту соответствует составной индекс (user_id, folder_id, поле, id):
+ * выборка страницы идет по нему без сортировки, id в конце делает порядок однозначным
+ */
+public enum FileSort {
+    NAME("name", FileListItem::getName, value -> value),
+    SIZE("size", FileListItem::getSize, Long::valueOf),
+    UPLOADED_AT("uploadedAt", FileListItem::getUploadedAt, LocalDateTime::parse);
+
+    private final String property;
+    private final Function<FileListItem, Object> key;
+    private final Function<String, Object> parser;
+
+    FileSort(String property, Function<FileListItem, Object> key, Function<String, Object> parser) {
+        this.property = property;
+        this.key = key;
+        this.parser = parser;
+    }
+
+    public String property() {
+        return property;
+    }
+
+    // Значение поля сортировки у последнего элемента страницы — начало следующей
+    public Object keyOf(FileListItem item) {
+        return key.apply(item);
+    }
+
+    public Object parseKey(String value) {
+        return parser.apply(value);
+    }
+
+    // Принимает name, size, uploadedAt и uploaded_at в любом регистре; null — если вариант неизвестен
+    public static FileSort from(String value) {
+        String normalized = value.replace("_", "").toLowerCase(Locale.ROOT);
+        for (FileSort sort : values()) {
+            if (sort.property.toLowerCase(Locale.ROOT).equals(normalized)) return sort;
+        }
+        return null;
+    }
+}
@@ -2,9 +2,23 @@ package cloud.storage.fileservice.repository;
 
 import cloud.storage.fileservice.models.Folder;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface FolderRepository extends JpaRepository<Folder, Long> {
     Optional<Folder> findFolderById(Long folderId);
+
+    // Папка и все вложенные одним запросом, родители раньше детей: строки [id, parent_id, name]
+    @Query(value = """
+            WITH RECURSIVE tree AS (
+                SELECT id, parent_id, name FROM folders WHERE id = :rootId
+                UNION ALL
+                SELECT f.id, f.parent_id, f.name FROM folders f JOIN tree t ON f.parent_id = t.id
+            )
+            SELECT id, parent_id, name FROM tree
+            """, nativeQuery = true)
+    List<Object[]> findSubtree(@Param("rootId") Long rootId);
 }
@@ -0,0 +1,38 @@
+package cloud.storage.fileservice.repository;
+
+import cloud.storage.fileservice.models.ObjectDeletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface ObjectDeletionRepository extends JpaRepository<ObjectDeletion, Long> {
+
+    /**
+     * Захват пачки готовых записей: им сразу назначается следующая попытка через lease, поэтому запись,
+     * которую обработчик не успел завершить (падение узла), вернется в работу сама. SKIP LOCKED позволяет
+     * нескольким узлам разбирать очередь одновременно без двойного захвата. Возвращает [id, s3_key, attempts]
+     */
+    @Transactional
+    @Query(value = """
+            UPDATE object_deletions SET attempts = attempts + 1, next_attempt_at = :leaseUntil
+            WHERE id IN (SELECT id FROM object_deletions WHERE next_attempt_at <= :now
+                         ORDER BY next_attempt_at LIMIT :limit FOR UPDATE SKIP LOCKED)
+            RETURNING id, s3_key, attempts
+            """, nativeQuery = true)
+    List<Object[]> claim(@Param("now") LocalDateTime now, @Param("leaseUntil") LocalDateTime leaseUntil,
+                         @Param("limit") int limit);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE ObjectDeletion d SET d.nextAttemptAt = :nextAttemptAt, d.lastError = :error WHERE d.id = :id")
+    int reschedule(@Param("id") Long id, @Param("nextAttemptAt") LocalDateTime nextAttemptAt, @Param("error") String error);
+
+    // [count, min(created_at)] — размер очереди и возраст самой старой записи
+    @Query("SELECT COUNT(d), MIN(d.createdAt) FROM ObjectDeletion d")
+    List<Object[]> backlog();
+}
@@ -0,0 +1,28 @@
+package cloud.storage.fileservice.repository;
+
+import cloud.storage.fileservice.models.Rendition;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface RenditionRepository extends JpaRepository<Rendition, Long> {
+    List<Rendition> findByFileIdOrderBySize(Long fileId);
+
+    @Query("SELECT r.s3Key FROM Rendition r WHERE r.file.id = :fileId")
+    List<String> findS3KeysByFileId(@Param("fileId") Long fileId);
+
+    @Modifying
+    @Query("DELETE FROM Rendition r WHERE r.file.id = :fileId")
+    void deleteByFileId(@Param("fileId") Long fileId);
+
+    @Query("SELECT r.s3Key FROM Rendition r WHERE r.file.id IN :fileIds")
+    List<String> findS3KeysByFileIds(@Param("fileIds") Collection<Long> fileIds);
+
+    @Modifying
+    @Query("DELETE FROM Rendition r WHERE r.file.id IN :fileIds")
+    void deleteByFileIds(@Param("fileIds") Collection<Long> fileIds);
+}
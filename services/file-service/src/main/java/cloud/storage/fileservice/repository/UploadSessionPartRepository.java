@@ -0,0 +1,21 @@
+package cloud.storage.fileservice.repository;
+
+import cloud.storage.fileservice.models.UploadSession;
+import cloud.storage.fileservice.models.UploadSessionPart;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface UploadSessionPartRepository extends JpaRepository<UploadSessionPart, Long> {
+    List<UploadSessionPart> findBySessionOrderByPartNumber(UploadSession session);
+
+    Optional<UploadSessionPart> findBySessionAndPartNumber(UploadSession session, Integer partNumber);
+
+    @Modifying
+    @Query("DELETE FROM UploadSessionPart p WHERE p.session = :session")
+    void deleteBySession(@Param("session") UploadSession session);
+}
@@ -0,0 +1,43 @@
+package cloud.storage.fileservice.repository;
+
+import cloud.storage.fileservice.models.UploadSession;
+import cloud.storage.fileservice.models.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface UploadSessionRepository extends JpaRepository<UploadSession, String> {
+    @Query("SELECT s FROM UploadSession s JOIN FETCH s.user WHERE s.id = :id")
+    Optional<UploadSession> findSessionById(@Param("id") String id);
+
+    List<UploadSession> findByExpiresAtBefore(LocalDateTime moment, Pageable pageable);
+
+    @Query("SELECT s FROM UploadSession s WHERE s.user = :user AND s.folder.id IN :folderIds")
+    List<UploadSession> findInFolders(@Param("user") User user, @Param("folderIds") Collection<Long> folderIds);
+
+    // Захват сессии для завершения или прерывания: 0 строк — сессию уже захватил другой запрос (или ее нет).
+    // Захват с истекшим сроком (узел упал посреди завершения) можно перехватить
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.claimedUntil = :until, s.expiresAt = :until " +
+            "WHERE s.id = :id AND (s.claimedUntil IS NULL OR s.claimedUntil < :now)")
+    int claim(@Param("id") String id, @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.claimedUntil = NULL WHERE s.id = :id")
+    int release(@Param("id") String id);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE UploadSession s SET s.expiresAt = :expiresAt WHERE s.id = :id")
+    int touch(@Param("id") String id, @Param("expiresAt") LocalDateTime expiresAt);
+}
@@ -0,0 +1,247 @@
+package cloud.storage.fileservice.services;
+
+import cloud.storage.fileservice.configuration.UploadProperties;
+import cloud.storage.fileservice.customExceptions.FileUploadException;
+import cloud.storage.fileservice.dto.responses.UploadFileResponse;
+import cloud.storage.fileservice.models.Blob;
+import cloud.storage.fileservice.models.File;
+import cloud.storage.fileservice.models.FileStatus;
+import cloud.storage.fileservice.models.Folder;
+import cloud.storage.fileservice.models.User;
+import cloud.storage.fileservice.repository.FileRepository;
+import cloud.storage.fileservice.services.S3Services.S3AsyncService;
+import cloud.storage.fileservice.services.deletion.ObjectDeletionOutbox;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Асинхронная загрузка: байты принимаются в локальный staging-файл, в БД пишется строка PENDING,
+ * и запрос сразу завершается. Передача в S3 идет в фоне, по ее окончании статус меняется на AVAILABLE/FAILED.
+ * Соединение с БД берется только на короткие транзакции метаданных.
+ * Staging-файл называется по id файла ({id}.part), поэтому после перезапуска передача возобновляется:
+ * каталог staging принадлежит одному экземпляру сервиса, как и прогресс передач в памяти.
+ */
+@Service
+@RequiredArgsConstructor
+public class AsyncUploadService {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncUploadService.class);
+
+    private static final int READ_BUFFER_SIZE = 256 * 1024;
+
+    private final S3AsyncService s3AsyncService;
+    private final ObjectDeletionOutbox objectDeletionOutbox;
+    private final BlobService blobService;
+    private final FileRepository fileRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final UploadProperties uploadProperties;
+
+    private final Instant startedAt = Instant.now();
+
+    // Прогресс фоновых передач: fileId -> переданные байты
+    private final Map<Long, AtomicLong> progress = new ConcurrentHashMap<>();
+
+    @FunctionalInterface
+    public interface Stager {
+        void stageTo(Path target) throws IOException;
+    }
+
+    public UploadFileResponse accept(User user, Folder folder, String fileName, String contentType, String s3Key, Stager stager) {
+        Path receivedFile = stage(stager);
+
+        File saved;
+        Path stagingFile;
+        try {
+            long size = Files.size(receivedFile);
+            if (size == 0) throw new FileUploadException("No file provided for upload", null);
+
+            saved = fileRepository.save(File.builder()
+                    .name(fileName)
+                    .s3Key(s3Key)
+                    .size(size)
+                    .contentType(contentType)
+                    .status(FileStatus.PENDING)
+                    .user(user)
+                    .folder(folder)
+                    .build());
+        } catch (IOException e) {
+            deleteQuietly(receivedFile);
+            throw new FileUploadException("Ошибка при приеме файла", e);
+        } catch (RuntimeException e) {
+            deleteQuietly(receivedFile);
+            throw e;
+        }
+
+        try {
+            // Переименование после записи строки: при сбое между ними строка без файла помечается FAILED при запуске
+            stagingFile = Files.move(receivedFile, stagingFile(saved.getId()), StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory(stagingFile.getParent());
+        } catch (IOException e) {
+            deleteQuietly(receivedFile);
+            fileRepository.updateStatus(saved.getId(), FileStatus.FAILED);
+            throw new FileUploadException("Ошибка при приеме файла", e);
+        }
+
+        transferInBackground(saved, stagingFile, user.getId());
+        return new UploadFileResponse(true, saved.getId(), FileStatus.PENDING);
+    }
+
+    /**
+     * Восстановление после перезапуска: передача PENDING-файлов с сохранившимся staging-файлом
+     * начинается заново, остальные помечаются FAILED. Staging-файлы без строки PENDING удаляются.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        Path stagingDir = Path.of(uploadProperties.getStagingDir());
+        Set<Path> resumed = new HashSet<>();
+        int failed = 0;
+        for (File file : fileRepository.findByStatusWithUser(FileStatus.PENDING)) {
+            if (progress.containsKey(file.getId())) continue;
+            Path stagingFile = stagingFile(file.getId());
+            if (Files.isRegularFile(stagingFile)) {
+                resumed.add(stagingFile);
+                transferInBackground(file, stagingFile, file.getUser().getId());
+            } else {
+                fileRepository.updateStatus(file.getId(), FileStatus.FAILED);
+                failed++;
+            }
+        }
+
+        int removed = 0;
+        if (Files.isDirectory(stagingDir)) {
+            try (Stream<Path> files = Files.list(stagingDir)) {
+                for (Path path : files.toList()) {
+                    // Файлы, которые принимаются прямо сейчас, моложе момента запуска
+                    if (resumed.contains(path) || !olderThanStartup(path)) continue;
+                    deleteQuietly(path);
+                    removed++;
+                }
+            } catch (IOException e) {
+                log.warn("Не удалось просмотреть каталог staging {}: {}", stagingDir, e.getMessage());
+            }
+        }
+        if (!resumed.isEmpty() || failed > 0 || removed > 0) {
+            log.info("Восстановление асинхронных загрузок: возобновлено {}, помечено FAILED {}, удалено staging-файлов {}",
+                    resumed.size(), failed, removed);
+        }
+    }
+
+    public long transferredBytes(Long fileId) {
+        AtomicLong transferred = progress.get(fileId);
+        return transferred != null ? transferred.get() : 0;
+    }
+
+    private Path stage(Stager stager) {
+        try {
+            Path stagingDir = Path.of(uploadProperties.getStagingDir());
+            Files.createDirectories(stagingDir);
+            Path stagingFile = Files.createTempFile(stagingDir, "upload-", ".tmp");
+            try {
+                stager.stageTo(stagingFile);
+                // Ответ клиенту уходит только после сброса данных на диск
+                try (FileChannel channel = FileChannel.open(stagingFile, StandardOpenOption.WRITE)) {
+                    channel.force(true);
+                }
+                return stagingFile;
+            } catch (IOException | RuntimeException e) {
+                deleteQuietly(stagingFile);
+                throw e;
+            }
+        } catch (IOException e) {
+            throw new FileUploadException("Ошибка при приеме файла", e);
+        }
+    }
+
+    private void transferInBackground(File file, Path stagingFile, Long ownerId) {
+        AtomicLong transferred = new AtomicLong();
+        progress.put(file.getId(), transferred);
+
+        MessageDigest digest = BlobService.newDigest();
+        var dataStream = blobService.digesting(
+                        DataBufferUtils.read(stagingFile, DefaultDataBufferFactory.sharedInstance, READ_BUFFER_SIZE), digest)
+                .doOnNext(buffer -> transferred.addAndGet(buffer.readableByteCount()));
+
+        s3AsyncService.uploadStreamInParts(file.getS3Key(), dataStream, file.getSize(), file.getContentType(), ownerId)
+                // Обновление статуса — блокирующий JDBC-вызов, уводим его с потоков S3-клиента
+                .publishOn(Schedulers.boundedElastic())
+                .doFinally(signal -> {
+                    progress.remove(file.getId());
+                    deleteQuietly(stagingFile);
+                })
+                .subscribe(
+                        checksum -> complete(file, BlobService.toHex(digest), checksum),
+                        e -> {
+                            log.error("Фоновая загрузка файла {} в S3 не удалась: {}", file.getId(), e.getMessage(), e);
+                            fileRepository.updateStatus(file.getId(), FileStatus.FAILED);
+                        }
+                );
+    }
+
+    private void complete(File file, String sha256, String checksum) {
+        Blob blob = transactionTemplate.execute(status -> {
+            Blob attached = blobService.attach(sha256, file.getS3Key(), file.getSize());
+            if (fileRepository.completeUpload(file.getId(), attached, attached.getS3Key(), checksum, FileStatus.AVAILABLE) == 0) {
+                // Строку успели удалить, пока шла передача — ссылка не нужна
+                status.setRollbackOnly();
+                return null;
+            }
+            return attached;
+        });
+        // Объект в S3 не нужен, если файл удален или такое содержимое уже хранилось под другим ключом
+        if (blob == null || !blob.getS3Key().equals(file.getS3Key())) {
+            objectDeletionOutbox.enqueue(file.getS3Key());
+        }
+    }
+
+    private Path stagingFile(Long fileId) {
+        return Path.of(uploadProperties.getStagingDir()).resolve(fileId + ".part");
+    }
+
+    // Переименование переживает сбой питания только после сброса каталога на диск
+    private void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Не удалось сбросить каталог {} на диск: {}", directory, e.getMessage());
+        }
+    }
+
+    private boolean olderThanStartup(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toInstant().isBefore(startedAt);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Не удалось удалить staging-файл {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package cloud.storage.fileservice.services;
+
+import cloud.storage.fileservice.models.Blob;
+import cloud.storage.fileservice.models.File;
+import cloud.storage.fileservice.models.User;
+import cloud.storage.fileservice.repository.BlobRepository;
+import cloud.storage.fileservice.repository.FileRepository;
+import cloud.storage.fileservice.services.deletion.ObjectDeletionOutbox;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Адресация содержимого: одинаковые по SHA-256 файлы ссылаются на один объект в S3 (таблица blobs со счетчиком ссылок).
+ * Копирование и повторная загрузка того же содержимого — только новая строка метаданных,
+ * объект удаляется из S3, когда на него не остается ссылок.
+ */
+@Service
+@RequiredArgsConstructor
+public class BlobService {
+
+    private final BlobRepository blobRepository;
+    private final FileRepository fileRepository;
+    private final ObjectDeletionOutbox objectDeletionOutbox;
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    public static String toHex(MessageDigest digest) {
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Хэширование по ходу передачи: буферы читаются без сдвига позиции, поток дальше идет без изменений
+     */
+    public Flux<DataBuffer> digesting(Flux<DataBuffer> source, MessageDigest digest) {
+        return source.doOnNext(buffer -> {
+            try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                while (iterator.hasNext()) digest.update(iterator.next());
+            }
+        });
+    }
+
+    /**
+     * Файл пользователя с таким же содержимым — по нему можно создать новый файл без передачи байтов
+     */
+    public Optional<File> findOwnedContent(User user, String sha256) {
+        if (sha256 == null || sha256.isBlank()) return Optional.empty();
+        return fileRepository.findByUserAndContent(user, sha256.toLowerCase(), PageRequest.of(0, 1)).stream().findFirst();
+    }
+
+    /**
+     * Регистрация только что загруженного объекта. Если такое содержимое уже хранится, возвращается существующий blob
+     * (его ключ отличается от s3Key) — загруженный дубликат вызывающий удаляет после фиксации транзакции.
+     */
+    public Blob attach(String sha256, String s3Key, long size) {
+        Long id = blobRepository.upsertReference(sha256, s3Key, size);
+        return blobRepository.findById(id).orElseThrow();
+    }
+
+    /**
+     * Новая ссылка на существующий blob; false — blob успели удалить вместе с последней ссылкой
+     */
+    public boolean reference(Blob blob) {
+        return blobRepository.incrementReferences(blob.getId()) > 0;
+    }
+
+    /**
+     * Общий объект для копии файла. Объект, загруженный без хэша, при первом копировании
+     * становится blob-ом с двумя ссылками
+     */
+    public Blob share(File file) {
+        Blob blob = file.getBlob();
+        if (blob != null) {
+            blobRepository.incrementReferences(blob.getId());
+            return blob;
+        }
+        blob = blobRepository.save(Blob.builder()
+                .s3Key(file.getS3Key())
+                .size(file.getSize())
+                .refCount(2)
+                .build());
+        file.setBlob(blob);
+        fileRepository.save(file);
+        return blob;
+    }
+
+    /**
+     * Освобождение объекта удаленного файла (строка files должна быть уже удалена и сброшена в БД).
+     * Объект ставится в очередь удаления в той же транзакции, из S3 его удалит фоновый обработчик
+     */
+    public void release(File file) {
+        Blob blob = file.getBlob();
+        if (blob == null) {
+            objectDeletionOutbox.enqueue(file.getS3Key());
+            return;
+        }
+        String s3Key = blob.getS3Key();
+        blobRepository.decrementReferences(blob.getId());
+        // Условное удаление: параллельная ссылка на тот же blob не даст удалить объект
+        if (blobRepository.deleteIfUnreferenced(blob.getId()) > 0) {
+            objectDeletionOutbox.enqueue(s3Key);
+        }
+    }
+
+    /**
+     * Пакетное удаление, шаг 1: счетчики ссылок уменьшаются одним запросом по строкам files,
+     * поэтому вызывается до удаления этих строк
+     */
+    public void detachAll(Collection<Long> fileIds) {
+        blobRepository.decrementReferencesOfFiles(fileIds);
+    }
+
+    /**
+     * Пакетное удаление, шаг 2 (после удаления строк files): blob-ы без ссылок удаляются,
+     * возвращаются ключи их объектов — вызывающий ставит их в очередь удаления
+     */
+    public List<String> purgeUnreferenced(Collection<Long> blobIds) {
+        if (blobIds.isEmpty()) return List.of();
+        List<String> keys = blobRepository.findUnreferencedKeys(blobIds);
+        blobRepository.deleteUnreferenced(blobIds);
+        return keys;
+    }
+}
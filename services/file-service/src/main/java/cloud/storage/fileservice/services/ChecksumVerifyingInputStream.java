@@ -0,0 +1,66 @@
+package cloud.storage.fileservice.services;
+
+import cloud.storage.fileservice.services.S3Services.Checksums;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32C;
+
+/**
+ * Считает CRC32C по мере чтения и в конце потока сверяет его с сохраненной суммой файла.
+ * При расхождении бросает IOException: ответ обрывается, и клиент не получает испорченный файл как целый.
+ */
+public class ChecksumVerifyingInputStream extends FilterInputStream {
+
+    private final CRC32C checksum = new CRC32C();
+    private final String expectedChecksum;
+    private boolean verified;
+
+    public ChecksumVerifyingInputStream(InputStream in, String expectedChecksum) {
+        super(in);
+        this.expectedChecksum = expectedChecksum;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b == -1) verify();
+        else checksum.update(b);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read == -1) verify();
+        else checksum.update(b, off, read);
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // Пропуск сделал бы сверку невозможной — читаем и отбрасываем
+        byte[] buffer = new byte[(int) Math.min(n, 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1) break;
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private void verify() throws IOException {
+        if (verified) return;
+        verified = true;
+        String actual = Checksums.toBase64(checksum.getValue());
+        if (!actual.equals(expectedChecksum))
+            throw new IOException("CRC32C mismatch: expected " + expectedChecksum + ", got " + actual);
+    }
+}
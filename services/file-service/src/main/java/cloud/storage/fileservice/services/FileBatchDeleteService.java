@@ -0,0 +1,90 @@
+package cloud.storage.fileservice.services;
+
+import cloud.storage.fileservice.customExceptions.TooManyFilesException;
+import cloud.storage.fileservice.dto.responses.DeleteFilesResponse;
+import cloud.storage.fileservice.models.User;
+import cloud.storage.fileservice.repository.FileRepository;
+import cloud.storage.fileservice.repository.RenditionRepository;
+import cloud.storage.fileservice.services.deletion.ObjectDeletionOutbox;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Удаление многих файлов одним запросом: права проверяются одной выборкой, строки удаляются одним DELETE,
+ * объекты ставятся в очередь удаления в той же транзакции (из S3 их пачками удалит фоновый обработчик)
+ */
+@Service
+@RequiredArgsConstructor
+public class FileBatchDeleteService {
+
+    public static final int MAX_FILES = 10_000;
+
+    // Файлов в одной транзакции при удалении содержимого папок
+    private static final int FOLDER_BATCH = 1000;
+
+    private final FileRepository fileRepository;
+    private final RenditionRepository renditionRepository;
+    private final BlobService blobService;
+    private final ObjectDeletionOutbox objectDeletionOutbox;
+    private final TransactionTemplate transactionTemplate;
+
+    public DeleteFilesResponse delete(User user, List<Long> fileIds) {
+        Set<Long> requested = new LinkedHashSet<>(fileIds == null ? List.of() : fileIds);
+        requested.remove(null);
+        if (requested.size() > MAX_FILES) {
+            throw new TooManyFilesException("At most " + MAX_FILES + " files can be deleted in one request");
+        }
+        if (requested.isEmpty()) return new DeleteFilesResponse(0, List.of());
+
+        Set<Long> deletedIds = transactionTemplate.execute(status -> removeRows(user, requested));
+
+        List<DeleteFilesResponse.Result> results = new ArrayList<>(requested.size());
+        for (Long id : requested) {
+            results.add(deletedIds.contains(id)
+                    ? new DeleteFilesResponse.Result(id, true, null)
+                    // Чужой и несуществующий файл неразличимы: не раскрываем, какие id существуют
+                    : new DeleteFilesResponse.Result(id, false, "File not found"));
+        }
+        return new DeleteFilesResponse(deletedIds.size(), results);
+    }
+
+    /**
+     * Удаление всех файлов пользователя в папках (для рекурсивного удаления папки).
+     * Идет пачками по FOLDER_BATCH файлов, каждая — отдельной короткой транзакцией. Возвращает число удаленных файлов
+     */
+    public long deleteInFolders(User user, Collection<Long> folderIds) {
+        if (folderIds.isEmpty()) return 0;
+        long deleted = 0;
+        while (true) {
+            List<Long> ids = fileRepository.findIdsInFolders(user, folderIds, PageRequest.of(0, FOLDER_BATCH));
+            if (ids.isEmpty()) return deleted;
+            Set<Long> batch = new LinkedHashSet<>(ids);
+            deleted += transactionTemplate.execute(status -> removeRows(user, batch)).size();
+        }
+    }
+
+    private Set<Long> removeRows(User user, Set<Long> requested) {
+        Set<Long> ids = new LinkedHashSet<>();
+        Set<Long> blobIds = new HashSet<>();
+        List<String> keys = new ArrayList<>();
+        for (Object[] row : fileRepository.findOwnedForDelete(user, requested)) {
+            ids.add((Long) row[0]);
+            if (row[2] != null) blobIds.add((Long) row[2]);
+            else keys.add((String) row[1]); // объект принадлежит только этому файлу
+        }
+        if (ids.isEmpty()) return ids;
+
+        keys.addAll(renditionRepository.findS3KeysByFileIds(ids));
+        renditionRepository.deleteByFileIds(ids);
+        blobService.detachAll(ids);
+        fileRepository.deleteByIds(ids);
+        // Объект общего содержимого удаляется, только если на него больше не ссылается ни один файл
+        keys.addAll(blobService.purgeUnreferenced(blobIds));
+        objectDeletionOutbox.enqueue(keys);
+        return ids;
+    }
+}
@@ -0,0 +1,419 @@
+package cloud.storage.fileservice.services;
+
+import cloud.storage.fileservice.configuration.DownloadProperties;
+import cloud.storage.fileservice.customExceptions.FileNotAvailableException;
+import cloud.storage.fileservice.dto.requests.DownloadFileRequest;
+import cloud.storage.fileservice.dto.responses.PresignedDownloadResponse;
+import cloud.storage.fileservice.models.File;
+import cloud.storage.fileservice.services.S3Services.Checksums;
+import cloud.storage.fileservice.services.S3Services.S3AsyncService;
+import cloud.storage.fileservice.services.S3Services.S3Service;
+import cloud.storage.fileservice.services.bandwidth.BandwidthShaper;
+import cloud.storage.fileservice.services.bandwidth.BandwidthShaper.Direction;
+import cloud.storage.fileservice.services.cache.DiskObjectCache;
+import cloud.storage.fileservice.services.compression.ResponseCompressor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ETag;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Отдача содержимого файла: целиком (200) или диапазонами (206) по заголовкам Range / If-Range.
+ * Из S3 запрашиваются только нужные байты (GetObject с Range); большие объемы читаются
+ * несколькими параллельными ranged GET с ограниченным окном упреждающего чтения.
+ */
+@Service
+@RequiredArgsConstructor
+public class FileDownloadService {
+
+    private final S3Service s3Service;
+    private final S3AsyncService s3AsyncService;
+    private final HelperService helperService;
+    private final DownloadProperties downloadProperties;
+    private final DiskObjectCache diskObjectCache;
+    private final BandwidthShaper bandwidthShaper;
+    private final ResponseCompressor responseCompressor;
+
+    // Файлы личные: промежуточные кэши их не хранят, клиент хранит, но перед использованием сверяет ETag
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    // Диапазон [start, end] включительно
+    private record ByteRange(long start, long end) {
+        long length() {
+            return end - start + 1;
+        }
+
+        String contentRange(long size) {
+            return "bytes " + start + "-" + end + "/" + size;
+        }
+    }
+
+    public ResponseEntity<InputStreamResource> download(File file, DownloadFileRequest request) {
+        if (notModified(file, request.getIfNoneMatch(), request.getIfModifiedSince())) return notModifiedResponse(file);
+        // Байты идут клиенту напрямую из S3; Range и If-Range клиент повторяет уже на ссылку
+        if (presignable(file)) {
+            return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(URI.create(presignedUrl(file)))
+                    .cacheControl(CacheControl.noStore())
+                    .build();
+        }
+        String rangeHeader = request.getRange();
+        String ifRange = request.getIfRange();
+        String contentType = contentType(file);
+        List<ByteRange> ranges = requestedRanges(file, rangeHeader, ifRange);
+        if (ranges == null) return rangeNotSatisfiable(file);
+        if (ranges.isEmpty()) return fullContent(file, contentType, request.getAcceptEncoding());
+
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            return partialContent(file)
+                    .header(HttpHeaders.CONTENT_TYPE, contentType)
+                    .header(HttpHeaders.CONTENT_RANGE, range.contentRange(file.getSize()))
+                    .contentLength(range.length())
+                    .body(new InputStreamResource(openRange(file, range.start(), range.end())));
+        }
+        return multipartByteRanges(file, contentType, ranges);
+    }
+
+    /**
+     * Неблокирующая отдача: тело — Flux<ByteBuffer> из S3AsyncClient, который пишется в ответ по мере готовности сокета.
+     * Поддерживается один диапазон; при нескольких файл отдается целиком (RFC 9110 разрешает игнорировать Range)
+     */
+    public ResponseEntity<Flux<ByteBuffer>> downloadStream(File file, DownloadFileRequest request) {
+        if (notModified(file, request.getIfNoneMatch(), request.getIfModifiedSince())) return notModifiedResponse(file);
+        String rangeHeader = request.getRange();
+        String ifRange = request.getIfRange();
+        String contentType = contentType(file);
+        List<ByteRange> ranges = requestedRanges(file, rangeHeader, ifRange);
+        if (ranges == null) return rangeNotSatisfiable(file);
+
+        if (ranges.size() == 1) {
+            ByteRange range = ranges.get(0);
+            return partialContent(file)
+                    .header(HttpHeaders.CONTENT_TYPE, contentType)
+                    .header(HttpHeaders.CONTENT_RANGE, range.contentRange(file.getSize()))
+                    .contentLength(range.length())
+                    .body(streamRange(file, range.start(), range.end()));
+        }
+
+        Flux<ByteBuffer> content = streamRange(file, 0, file.getSize() - 1);
+        if (downloadProperties.isVerifyChecksum() && file.getChecksumCrc32c() != null) {
+            content = verifyingChecksum(content, file.getChecksumCrc32c());
+        }
+        return withFileHeaders(ResponseEntity.ok(), file)
+                .header(HttpHeaders.CONTENT_TYPE, contentType)
+                .contentLength(file.getSize())
+                .body(content);
+    }
+
+    /**
+     * Подписанная ссылка на скачивание из S3 для клиентов, которым нужен JSON вместо 302
+     */
+    public PresignedDownloadResponse presignedDownload(File file) {
+        if (!presignable(file)) {
+            throw new FileNotAvailableException("Direct download from storage is disabled for this file");
+        }
+        Instant expiresAt = Instant.now().plus(downloadProperties.getPresignTtl());
+        return new PresignedDownloadResponse(presignedUrl(file), expiresAt);
+    }
+
+    // Режим ссылок включен и тип файла не требует отдачи через сервис
+    private boolean presignable(File file) {
+        if (!downloadProperties.isPresignedRedirect()) return false;
+        MediaType type = MediaType.parseMediaType(contentType(file));
+        return downloadProperties.getProxyContentTypes().stream()
+                .map(MediaType::parseMediaType)
+                .noneMatch(proxied -> proxied.includes(type));
+    }
+
+    // Content-Disposition и Content-Type S3 вернет те же, что при отдаче через сервис
+    private String presignedUrl(File file) {
+        return s3Service.presignDownload(file.getS3Key(), contentDisposition(file), contentType(file),
+                downloadProperties.getPresignTtl());
+    }
+
+    /**
+     * Условный GET (RFC 9110, 13.2.2): If-None-Match сравнивается слабо и имеет приоритет,
+     * If-Modified-Since учитывается только без него. Проверяется до Range и до любого обращения к S3
+     */
+    private boolean notModified(File file, String ifNoneMatch, String ifModifiedSince) {
+        if (ifNoneMatch != null && !ifNoneMatch.isBlank()) {
+            ETag current = ETag.create(helperService.eTag(file));
+            return ETag.parse(ifNoneMatch).stream().anyMatch(tag -> tag.isWildcard() || tag.compare(current, false));
+        }
+        Instant since = parseHttpDate(ifModifiedSince);
+        return since != null && !helperService.lastModified(file).truncatedTo(ChronoUnit.SECONDS).isAfter(since);
+    }
+
+    private <T> ResponseEntity<T> notModifiedResponse(File file) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                .eTag(helperService.eTag(file))
+                .lastModified(helperService.lastModified(file))
+                .cacheControl(REVALIDATE)
+                .build();
+    }
+
+    /**
+     * Диапазоны из Range с учетом If-Range: пустой список — отдать файл целиком, null — ни один диапазон не выполним
+     */
+    private List<ByteRange> requestedRanges(File file, String rangeHeader, String ifRange) {
+        List<HttpRange> httpRanges = rangeHeader == null || !rangeMatches(file, ifRange)
+                ? List.of()
+                : parseRanges(rangeHeader);
+        if (httpRanges.isEmpty()) return List.of();
+
+        List<ByteRange> ranges = toByteRanges(httpRanges, file.getSize());
+        if (ranges.isEmpty()) return null;
+        // Пересекающиеся диапазоны суммарно больше файла — дешевле отдать его целиком
+        if (ranges.stream().mapToLong(ByteRange::length).sum() >= file.getSize()) return List.of();
+        return ranges;
+    }
+
+    private <T> ResponseEntity<T> rangeNotSatisfiable(File file) {
+        return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                .header(HttpHeaders.CONTENT_RANGE, "bytes */" + file.getSize())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .build();
+    }
+
+    // Тип приходит от клиента при загрузке: некорректный отдается как octet-stream, а не ломает скачивание
+    private String contentType(File file) {
+        if (file.getContentType() == null) return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        try {
+            MediaType.parseMediaType(file.getContentType());
+            return file.getContentType();
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+        }
+    }
+
+    private ResponseEntity<InputStreamResource> fullContent(File file, String contentType, String acceptEncoding) {
+        InputStream content = openRange(file, 0, file.getSize() - 1);
+        // Сверка CRC32C возможна только при отдаче файла целиком
+        if (downloadProperties.isVerifyChecksum() && file.getChecksumCrc32c() != null) {
+            content = new ChecksumVerifyingInputStream(content, file.getChecksumCrc32c());
+        }
+        String encoding = responseCompressor.negotiate(contentType, file.getSize(), acceptEncoding);
+        if (encoding != null) {
+            // Длина сжатого тела заранее неизвестна — ответ уходит chunked. ETag слабый: байты отличаются от исходных,
+            // а If-None-Match и так сравнивается слабо. Диапазоны отдаются только в исходном представлении,
+            // поэтому смещения, посчитанные по сжатому телу, клиенту не предлагаются
+            return withFileHeaders(ResponseEntity.ok(), file, false)
+                    .eTag("W/" + helperService.eTag(file))
+                    .header(HttpHeaders.CONTENT_TYPE, contentType)
+                    .header(HttpHeaders.CONTENT_ENCODING, encoding)
+                    .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                    .body(new InputStreamResource(responseCompressor.compress(content, encoding, file.getSize())));
+        }
+        return withFileHeaders(ResponseEntity.ok(), file)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING)
+                .header(HttpHeaders.CONTENT_TYPE, contentType)
+                .contentLength(file.getSize())
+                .body(new InputStreamResource(content));
+    }
+
+    // multipart/byteranges: каждый диапазон — отдельный ranged GetObject, открывается только когда до него дошла очередь
+    private ResponseEntity<InputStreamResource> multipartByteRanges(File file, String contentType, List<ByteRange> ranges) {
+        String boundary = UUID.randomUUID().toString().replace("-", "");
+        List<InputStream> parts = new ArrayList<>(ranges.size() * 2 + 1);
+        long contentLength = 0;
+        for (ByteRange range : ranges) {
+            byte[] partHeader = ("\r\n--" + boundary + "\r\n"
+                    + HttpHeaders.CONTENT_TYPE + ": " + contentType + "\r\n"
+                    + HttpHeaders.CONTENT_RANGE + ": " + range.contentRange(file.getSize()) + "\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII);
+            parts.add(new ByteArrayInputStream(partHeader));
+            parts.add(new LazyInputStream(() -> openRange(file, range.start(), range.end())));
+            contentLength += partHeader.length + range.length();
+        }
+        byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+        parts.add(new ByteArrayInputStream(closing));
+        contentLength += closing.length;
+
+        return partialContent(file)
+                .header(HttpHeaders.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary)
+                .contentLength(contentLength)
+                .body(new InputStreamResource(new SequenceInputStream(Collections.enumeration(parts))));
+    }
+
+    // Чтение ограничено полосой владельца файла
+    private InputStream openRange(File file, long start, long end) {
+        return bandwidthShaper.throttle(file.getUser().getId(), Direction.DOWNLOAD, openSource(file, start, end));
+    }
+
+    private Flux<ByteBuffer> streamRange(File file, long start, long end) {
+        return bandwidthShaper.throttle(file.getUser().getId(), Direction.DOWNLOAD, streamSource(file, start, end));
+    }
+
+    // Сначала локальный кэш; небольшие объемы — одним GetObject, крупные — параллельными диапазонами, собранными по порядку
+    private InputStream openSource(File file, long start, long end) {
+        InputStream cached = diskObjectCache.openRange(file, start, end);
+        if (cached != null) return cached;
+        if (end - start + 1 >= downloadProperties.getParallelThreshold()) {
+            // Спрос 1: следующий диапазон передается потоку ответа, только когда прочитан предыдущий
+            return DataBufferUtils.subscriberInputStream(
+                    s3AsyncService.downloadRangeParallel(file.getS3Key(), start, end)
+                            .map(DefaultDataBufferFactory.sharedInstance::wrap),
+                    1);
+        }
+        if (start == 0 && end == file.getSize() - 1) {
+            return s3Service.downloadFile(file.getS3Key());
+        }
+        return s3Service.downloadRange(file.getS3Key(), start, end);
+    }
+
+    private Flux<ByteBuffer> streamSource(File file, long start, long end) {
+        Flux<ByteBuffer> cached = diskObjectCache.streamRange(file, start, end);
+        if (cached != null) return cached;
+        if (end - start + 1 >= downloadProperties.getParallelThreshold()) {
+            return s3AsyncService.downloadRangeParallel(file.getS3Key(), start, end);
+        }
+        return s3AsyncService.downloadRange(file.getS3Key(), start, end);
+    }
+
+    // CRC32C по ходу отдачи; при расхождении поток завершается ошибкой и ответ обрывается
+    private Flux<ByteBuffer> verifyingChecksum(Flux<ByteBuffer> content, String expectedChecksum) {
+        return Flux.defer(() -> {
+            CRC32C checksum = new CRC32C();
+            return content
+                    .doOnNext(buffer -> checksum.update(buffer.duplicate()))
+                    .concatWith(Mono.defer(() -> {
+                        String actual = Checksums.toBase64(checksum.getValue());
+                        return actual.equals(expectedChecksum)
+                                ? Mono.empty()
+                                : Mono.error(new IOException("CRC32C mismatch: expected " + expectedChecksum + ", got " + actual));
+                    }));
+        });
+    }
+
+    private ResponseEntity.BodyBuilder partialContent(File file) {
+        return withFileHeaders(ResponseEntity.status(HttpStatus.PARTIAL_CONTENT), file);
+    }
+
+    private ResponseEntity.BodyBuilder withFileHeaders(ResponseEntity.BodyBuilder builder, File file) {
+        return withFileHeaders(builder, file, true);
+    }
+
+    private ResponseEntity.BodyBuilder withFileHeaders(ResponseEntity.BodyBuilder builder, File file, boolean acceptRanges) {
+        return builder
+                .header(HttpHeaders.CONTENT_DISPOSITION, contentDisposition(file))
+                .header(HttpHeaders.ACCEPT_RANGES, acceptRanges ? "bytes" : "none")
+                .eTag(helperService.eTag(file))
+                .lastModified(helperService.lastModified(file))
+                .cacheControl(REVALIDATE);
+    }
+
+    private String contentDisposition(File file) {
+        String encodedFilename = URLEncoder.encode(file.getName(), StandardCharsets.UTF_8)
+                .replaceAll("\\+", "%20");
+        return "attachment; filename*=UTF-8''" + encodedFilename;
+    }
+
+    // If-Range: диапазон отдается, только если клиент докачивает ту же версию файла (сильный ETag или точная дата)
+    private boolean rangeMatches(File file, String ifRange) {
+        if (ifRange == null || ifRange.isBlank()) return true;
+        String validator = ifRange.trim();
+        if (validator.startsWith("\"") || validator.startsWith("W/")) {
+            return validator.equals(helperService.eTag(file));
+        }
+        Instant since = parseHttpDate(validator);
+        return since != null && since.equals(helperService.lastModified(file).truncatedTo(ChronoUnit.SECONDS));
+    }
+
+    // HTTP-дата (RFC 1123); некорректная — null, заголовок игнорируется
+    private Instant parseHttpDate(String value) {
+        if (value == null || value.isBlank()) return null;
+        try {
+            return ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    // Некорректный заголовок Range игнорируется — файл отдается целиком
+    private List<HttpRange> parseRanges(String rangeHeader) {
+        try {
+            return HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    // Невыполнимые диапазоны (начало за концом файла) отбрасываются
+    private List<ByteRange> toByteRanges(List<HttpRange> httpRanges, long size) {
+        List<ByteRange> ranges = new ArrayList<>(httpRanges.size());
+        for (HttpRange httpRange : httpRanges) {
+            try {
+                ranges.add(new ByteRange(httpRange.getRangeStart(size), httpRange.getRangeEnd(size)));
+            } catch (IllegalArgumentException e) {
+                // start >= size или пустой суффикс
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Поток, который открывается при первом чтении: соединение с S3 для следующего диапазона
+     * не занимается заранее и не открывается вовсе, если клиент отключился раньше
+     */
+    private static final class LazyInputStream extends InputStream {
+
+        private final Supplier<InputStream> opener;
+        private InputStream delegate;
+
+        private LazyInputStream(Supplier<InputStream> opener) {
+            this.opener = opener;
+        }
+
+        private InputStream delegate() {
+            if (delegate == null) delegate = opener.get();
+            return delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return delegate().read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return delegate().read(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (delegate != null) delegate.close();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package cloud.storage.fileservice.services;
+
+import cloud.storage.fileservice.customExceptions.InvalidListingRequestException;
+import cloud.storage.fileservice.dto.requests.ListFilesRequest;
+import cloud.storage.fileservice.dto.responses.FileListItem;
+import cloud.storage.fileservice.dto.responses.ListFilesResponse;
+import cloud.storage.fileservice.models.Folder;
+import cloud.storage.fileservice.models.User;
+import cloud.storage.fileservice.repository.FileRepository;
+import cloud.storage.fileservice.repository.FileSort;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Постраничный список файлов папки. Страницы выбираются по ключу (keyset) — значение поля сортировки и id
+ * последней строки, а не OFFSET, поэтому любая страница стоит как первая. Выбираются только нужные колонки,
+ * сущности File в контекст персистентности не попадают.
+ */
+@Service
+@RequiredArgsConstructor
+public class FileListingService {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    // Порция выгрузки: каждая выбирается отдельным коротким запросом, соединение с БД не держится на время записи
+    private static final int EXPORT_BATCH = 1000;
+
+    private final FileRepository fileRepository;
+    private final ObjectMapper objectMapper;
+
+    private record Cursor(Object key, Long id) {
+    }
+
+    public ListFilesResponse page(User user, Folder folder, ListFilesRequest request) {
+        FileSort sort = sort(request.getSort());
+        boolean descending = descending(request.getDirection());
+        if (request.getLimit() < 1 || request.getLimit() > MAX_LIMIT) {
+            throw new InvalidListingRequestException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        Cursor cursor = request.getCursor() == null ? null : decodeCursor(request.getCursor(), sort, descending);
+
+        // Лишняя строка показывает, есть ли следующая страница, без отдельного COUNT
+        List<FileListItem> rows = fileRepository.findPage(user, folder, sort, descending,
+                cursor == null ? null : cursor.key(), cursor == null ? null : cursor.id(), request.getLimit() + 1);
+        if (rows.size() <= request.getLimit()) return new ListFilesResponse(rows, null);
+
+        List<FileListItem> page = rows.subList(0, request.getLimit());
+        return new ListFilesResponse(page, encodeCursor(sort, descending, page.get(page.size() - 1)));
+    }
+
+    /**
+     * Полная выгрузка списка одним JSON-массивом, который пишется в ответ порциями по мере выборки
+     */
+    public ResponseEntity<StreamingResponseBody> export(User user, Folder folder, ListFilesRequest request) {
+        FileSort sort = sort(request.getSort());
+        boolean descending = descending(request.getDirection());
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CACHE_CONTROL, "no-store")
+                .body(out -> writeAll(user, folder, sort, descending, out));
+    }
+
+    private void writeAll(User user, Folder folder, FileSort sort, boolean descending, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.writeStartArray();
+            Object afterKey = null;
+            Long afterId = null;
+            while (true) {
+                List<FileListItem> batch = fileRepository.findPage(user, folder, sort, descending, afterKey, afterId, EXPORT_BATCH);
+                for (FileListItem item : batch) generator.writeObject(item);
+                // Порция уходит клиенту сразу: клиент начинает разбор, не дожидаясь конца выгрузки
+                generator.flush();
+                if (batch.size() < EXPORT_BATCH) break;
+                FileListItem last = batch.get(batch.size() - 1);
+                afterKey = sort.keyOf(last);
+                afterId = last.getId();
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private FileSort sort(String value) {
+        if (value == null) return FileSort.NAME;
+        FileSort sort = FileSort.from(value);
+        if (sort == null) throw new InvalidListingRequestException("Unknown sort: " + value + " (expected name, size or uploadedAt)");
+        return sort;
+    }
+
+    private boolean descending(String value) {
+        if (value == null || value.equalsIgnoreCase("asc")) return false;
+        if (value.equalsIgnoreCase("desc")) return true;
+        throw new InvalidListingRequestException("Unknown direction: " + value + " (expected asc or desc)");
+    }
+
+    // Курсор непрозрачен для клиента: порядок, id и значение поля сортировки последней строки в base64url
+    private String encodeCursor(FileSort sort, boolean descending, FileListItem last) {
+        String raw = sort.name() + ":" + (descending ? "d" : "a") + ":" + last.getId() + ":" + sort.keyOf(last);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Cursor decodeCursor(String value, FileSort sort, boolean descending) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+            // Значение последним: в имени файла может быть ':'
+            String[] parts = raw.split(":", 4);
+            if (parts.length != 4) throw new InvalidListingRequestException("Malformed cursor");
+            if (!parts[0].equals(sort.name()) || !parts[1].equals(descending ? "d" : "a")) {
+                throw new InvalidListingRequestException("Cursor was issued for a different sort order");
+            }
+            return new Cursor(sort.parseKey(parts[3]), Long.valueOf(parts[2]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new InvalidListingRequestException("Malformed cursor");
+        }
+    }
+}
@@ -4,15 +4,28 @@ import cloud.storage.fileservice.dto.requests.*;
 import cloud.storage.fileservice.dto.responses.*;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
+import java.nio.ByteBuffer;
 import java.security.Principal;
+import java.util.function.Predicate;
 
 public interface FileService {
     UploadFileResponse uploadFile(UploadFileRequest request, Principal principal);
+    UploadFileResponse uploadFileStream(UploadFileStreamRequest request, Principal principal);
+    UploadStatusResponse getUploadStatus(Long fileId, Principal principal);
     DeleteFileResponse deleteFile(DeleteFileRequest request, Principal principal);
-    GetFilesInDirectoryResponse getFiles(GetFilesInDirectoryRequest request, Principal principal);
+    DeleteFilesResponse deleteFiles(DeleteFilesRequest request, Principal principal);
+    GetFilesInDirectoryResponse getFiles(GetFilesInDirectoryRequest request, Predicate<String> notModified, Principal principal);
+    ListFilesResponse listFiles(ListFilesRequest request, Principal principal);
+    ResponseEntity<StreamingResponseBody> exportFiles(ListFilesRequest request, Principal principal);
     MoveFileResponse moveFile(MoveFileRequest request, Principal principal);
     RenameFileResponse renameFile(RenameFileRequest request, Principal principal);
     CopyFileResponse copyFile(CopyFileRequest request, Principal principal);
-    ResponseEntity<InputStreamResource> downloadFileResponse(Long fileId, Principal principal);
+    ResponseEntity<InputStreamResource> downloadFileResponse(DownloadFileRequest request, Principal principal);
+    ResponseEntity<Flux<ByteBuffer>> downloadFileStream(DownloadFileRequest request, Principal principal);
+    PresignedDownloadResponse getDownloadUrl(Long fileId, Principal principal);
+    ResponseEntity<InputStreamResource> getThumbnail(Long fileId, int size, Principal principal);
+    ResponseEntity<StreamingResponseBody> downloadFolderArchive(DownloadFolderArchiveRequest request, Principal principal);
 }
@@ -1,32 +1,47 @@
 package cloud.storage.fileservice.services;
 
+import cloud.storage.fileservice.customExceptions.FileNotAvailableException;
+import cloud.storage.fileservice.customExceptions.FileNotFoundException;
+import cloud.storage.fileservice.customExceptions.FileUploadException;
 import cloud.storage.fileservice.customExceptions.S3UploadException;
 import cloud.storage.fileservice.dto.requests.*;
 import cloud.storage.fileservice.dto.responses.*;
+import cloud.storage.fileservice.models.Blob;
+import cloud.storage.fileservice.models.FileStatus;
 import cloud.storage.fileservice.models.Folder;
 import cloud.storage.fileservice.models.User;
 import cloud.storage.fileservice.repository.FileRepository;
 import cloud.storage.fileservice.services.S3Services.S3AsyncService;
-import cloud.storage.fileservice.services.S3Services.S3Service;
+import cloud.storage.fileservice.services.bandwidth.BandwidthShaper;
+import cloud.storage.fileservice.services.bandwidth.BandwidthShaper.Direction;
+import cloud.storage.fileservice.services.deletion.ObjectDeletionOutbox;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.InputStreamResource;
-import org.springframework.core.io.buffer.DataBufferUtils;
-import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.InputStream;
-import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.security.Principal;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 @Service
@@ -36,50 +51,119 @@ public class FileServiceImpl implements FileService {
     private static final Logger log = LoggerFactory.getLogger(FileServiceImpl.class);
 
     private final HelperService helperService;
+    private final AsyncUploadService asyncUploadService;
+    private final BlobService blobService;
+    private final FileDownloadService fileDownloadService;
+    private final FolderArchiveService folderArchiveService;
+    private final FileListingService fileListingService;
+    private final FileBatchDeleteService fileBatchDeleteService;
+    private final ObjectDeletionOutbox objectDeletionOutbox;
+    private final BandwidthShaper bandwidthShaper;
+    private final RenditionService renditionService;
     private final S3AsyncService s3AsyncService;
-    private final S3Service s3Service;
 
     private final FileRepository fileRepository;
-
-    // 100 MB
-    private static final long MULTIPART_THRESHOLD = 100L * 1024 * 1024;
+    private final TransactionTemplate transactionTemplate;
 
     @Override
-    @Transactional
     public UploadFileResponse uploadFile(UploadFileRequest request, Principal principal) {
         MultipartFile file = request.getFile();
         helperService.validateFileNotEmpty(file);
         User user = helperService.validateAndGetUser(principal);
         Folder folder = helperService.validateAndGetFolder(user, request.getFolderId());
         helperService.validateFileNameUniq(user, folder, file.getOriginalFilename());
-        String s3Key = helperService.generateS3Key(file.getOriginalFilename());
 
-        try {
-            fileRepository.save(cloud.storage.fileservice.models.File.builder()
-                    .name(file.getOriginalFilename())
-                    .s3Key(s3Key)
-                    .size(file.getSize())
-                    .contentType(file.getContentType())
-                    .user(user)
-                    .folder(folder)
-                    .build());
+        Optional<UploadFileResponse> deduplicated = saveKnownContent(user, folder, file.getOriginalFilename(), file.getContentType(), request.getSha256());
+        if (deduplicated.isPresent()) return deduplicated.get();
 
-            // Создаем временный файл
-            File tempFile = File.createTempFile("upload-", ".tmp");
-            file.transferTo(tempFile);
+        String s3Key = helperService.generateS3Key(file.getOriginalFilename());
 
-            // Асинхронная загрузка в фоне
-            uploadFileAsync(s3Key, tempFile, file.getContentType())
-                    .doFinally(signal -> tempFile.delete())
+        if (request.isAsync()) {
+            // transferTo для уже сохраненного контейнером multipart обычно сводится к переносу файла
+            return asyncUploadService.accept(user, folder, file.getOriginalFilename(), file.getContentType(), s3Key, file::transferTo);
+        }
+
+        MessageDigest digest = BlobService.newDigest();
+        String checksum;
+        InputStream body = null;
+        try {
+            // Читаем содержимое напрямую из multipart, без промежуточного временного файла
+            body = bandwidthShaper.throttle(user.getId(), Direction.UPLOAD, file.getInputStream());
+            checksum = uploadToS3(s3Key, blobService.digesting(helperService.readStream(body), digest), file.getSize(), file.getContentType(), user.getId())
                     .doOnError(e -> log.error("Ошибка при загрузке файла в S3: {}", e.getMessage()))
                     .block();
 
         } catch (Exception e) {
             log.error("Ошибка при подготовке файла для загрузки в S3: {}", e.getMessage(), e);
             throw new S3UploadException("Ошибка при загрузке файла в S3", e);
+        } finally {
+            if (body != null) helperService.closeQuietly(body);
         }
 
-        return new UploadFileResponse(true);
+        return saveUploadedFile(user, folder, file.getOriginalFilename(), file.getContentType(),
+                new StoredContent(s3Key, file.getSize(), BlobService.toHex(digest), checksum), request.getSha256());
+    }
+
+    @Override
+    public UploadFileResponse uploadFileStream(UploadFileStreamRequest request, Principal principal) {
+        String fileName = request.getFileName() != null ? request.getFileName().trim() : null;
+        helperService.validateStreamNotEmpty(fileName, request.getContentLength());
+        User user = helperService.validateAndGetUser(principal);
+        Folder folder = helperService.validateAndGetFolder(user, request.getFolderId());
+        helperService.validateFileNameUniq(user, folder, fileName);
+        String contentType = request.getContentType() == null || MediaType.APPLICATION_OCTET_STREAM_VALUE.equals(request.getContentType())
+                ? helperService.detectMimeType(fileName)
+                : request.getContentType();
+
+        // Тело запроса при этом не читается: соединение закроется вместе с непрочитанными байтами
+        Optional<UploadFileResponse> deduplicated = saveKnownContent(user, folder, fileName, contentType, request.getSha256());
+        if (deduplicated.isPresent()) return deduplicated.get();
+
+        String s3Key = helperService.generateS3Key(fileName);
+        InputStream body = bandwidthShaper.throttle(user.getId(), Direction.UPLOAD, request.getBody());
+
+        // Пока поток не закрыт, пользователь считается активным при делении полосы
+        if (request.isAsync()) {
+            try {
+                return asyncUploadService.accept(user, folder, fileName, contentType, s3Key, target -> {
+                    try (InputStream in = body) {
+                        Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                });
+            } finally {
+                helperService.closeQuietly(body);
+            }
+        }
+
+        // Размер заранее может быть неизвестен (chunked), поэтому считаем байты по мере чтения
+        AtomicLong receivedBytes = new AtomicLong();
+        MessageDigest digest = BlobService.newDigest();
+        Flux<DataBuffer> dataStream = blobService.digesting(helperService.readStream(body), digest)
+                .doOnNext(buffer -> receivedBytes.addAndGet(buffer.readableByteCount()));
+
+        String checksum;
+        try {
+            checksum = uploadToS3(s3Key, dataStream, request.getContentLength(), contentType, user.getId())
+                    .doOnError(e -> log.error("Ошибка при потоковой загрузке файла в S3: {}", e.getMessage()))
+                    .block();
+        } catch (Exception e) {
+            throw new S3UploadException("Ошибка при загрузке файла в S3", e);
+        } finally {
+            helperService.closeQuietly(body);
+        }
+
+        return saveUploadedFile(user, folder, fileName, contentType,
+                new StoredContent(s3Key, receivedBytes.get(), BlobService.toHex(digest), checksum), request.getSha256());
+    }
+
+    @Override
+    public UploadStatusResponse getUploadStatus(Long fileId, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        cloud.storage.fileservice.models.File file = helperService.validateAndGetFile(user, fileId);
+        long transferred = file.getStatus() == FileStatus.AVAILABLE
+                ? file.getSize()
+                : asyncUploadService.transferredBytes(fileId);
+        return new UploadStatusResponse(fileId, file.getStatus(), transferred, file.getSize());
     }
 
     @Override
@@ -87,22 +171,60 @@ public class FileServiceImpl implements FileService {
     public DeleteFileResponse deleteFile(DeleteFileRequest request, Principal principal){
         User user = helperService.validateAndGetUser(principal);
         cloud.storage.fileservice.models.File file = helperService.validateAndGetFile(user, request.getFileId());
+        renditionService.deleteFor(file);
         fileRepository.delete(file);
-        s3Service.deleteFile(file.getS3Key());
+        fileRepository.flush();
+        // Объект удаляется из S3, только если на него больше не ссылается ни один файл
+        blobService.release(file);
         return new DeleteFileResponse(true, "File delete successfully");
     }
 
     @Override
-    public GetFilesInDirectoryResponse getFiles(GetFilesInDirectoryRequest request, Principal principal) throws SecurityException {
+    public DeleteFilesResponse deleteFiles(DeleteFilesRequest request, Principal principal) {
         User user = helperService.validateAndGetUser(principal);
+        return fileBatchDeleteService.delete(user, request.getFileIds());
+    }
+
+    @Override
+    public GetFilesInDirectoryResponse getFiles(GetFilesInDirectoryRequest request, Predicate<String> notModified, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        // Папка проверяется один раз: и ETag, и список строятся по ней
         Folder folder = helperService.validateAndGetFolder(user, request.getFolderId());
-        Map<String, Long> fileMap = fileRepository.findFilesByFolder(folder)
+        if (notModified.test(filesETag(user, folder))) return null;
+
+        // Только имя и id: сущности File для этого не загружаются
+        Map<String, Long> fileMap = fileRepository.findNamesAndIdsByFolder(user, folder)
                 .stream()
-                .collect(Collectors.toMap(cloud.storage.fileservice.models.File::getName, cloud.storage.fileservice.models.File::getId));
+                .collect(Collectors.toMap(row -> (String) row[0], row -> (Long) row[1]));
 
         return new GetFilesInDirectoryResponse(fileMap, "Received all files in directory id: " + (request.getFolderId() == null ? "root" : request.getFolderId()));
     }
 
+    // Слабый: совпадение означает тот же набор файлов, а не побайтно тот же JSON
+    private String filesETag(User user, Folder folder) {
+        Object[] state = fileRepository.folderState(user, folder).get(0);
+        String version = state[0] + ":" + state[1] + ":" + state[2];
+        return "W/\"" + DigestUtils.md5DigestAsHex(version.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    @Override
+    public ListFilesResponse listFiles(ListFilesRequest request, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        Folder folder = helperService.validateAndGetFolder(user, request.getFolderId());
+        return fileListingService.page(user, folder, request);
+    }
+
+    @Override
+    public ResponseEntity<StreamingResponseBody> exportFiles(ListFilesRequest request, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        Folder folder = helperService.validateAndGetFolder(user, request.getFolderId());
+
+        log.info("Начинается выгрузка списка файлов папки {} пользователем {}",
+                request.getFolderId() == null ? "root" : request.getFolderId(), user.getEmail());
+
+        return fileListingService.export(user, folder, request);
+    }
+
     @Override
     @Transactional
     public MoveFileResponse moveFile(MoveFileRequest request, Principal principal) {
@@ -159,56 +281,153 @@ public class FileServiceImpl implements FileService {
         User user = helperService.validateAndGetUser(principal);
         Folder targetFolder = helperService.validateAndGetFolder(user, request.getTargetFolderId());
         cloud.storage.fileservice.models.File file = helperService.validateAndGetFile(user, request.getFileId());
+        helperService.validateFileAvailable(file);
         helperService.validateFileNameUniq(user, targetFolder, file.getName());
-        String copyS3Key = helperService.generateS3Key(file.getName());
-        s3Service.copyFile(file.getS3Key(), copyS3Key);
+        // Копия ссылается на тот же объект в S3 — меняются только метаданные
+        Blob blob = blobService.share(file);
         cloud.storage.fileservice.models.File copiedFile = cloud.storage.fileservice.models.File.builder()
                 .user(user)
                 .name(file.getName())
-                .s3Key(copyS3Key)
+                .s3Key(blob.getS3Key())
+                .blob(blob)
                 .folder(targetFolder)
                 .contentType(file.getContentType())
                 .size(file.getSize())
+                .checksumCrc32c(file.getChecksumCrc32c())
                 .build();
         fileRepository.save(copiedFile);
         return new CopyFileResponse("File copied successfully");
     }
 
     @Override
-    public ResponseEntity<InputStreamResource> downloadFileResponse(Long fileId, Principal principal) {
+    public ResponseEntity<InputStreamResource> downloadFileResponse(DownloadFileRequest request, Principal principal) {
         User user = helperService.validateAndGetUser(principal);
-        cloud.storage.fileservice.models.File file = helperService.validateAndGetFile(user, fileId);
+        cloud.storage.fileservice.models.File file = helperService.validateAndGetFile(user, request.getFileId());
+        helperService.validateFileAvailable(file);
 
         log.info("Начинается скачивание файла {} пользователем {}", file.getName(), user.getEmail());
 
-        InputStreamResource resource = new InputStreamResource(s3Service.downloadFile(file.getS3Key()));
+        return fileDownloadService.download(file, request);
+    }
+
+    @Override
+    public ResponseEntity<Flux<ByteBuffer>> downloadFileStream(DownloadFileRequest request, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        cloud.storage.fileservice.models.File file = helperService.validateAndGetFile(user, request.getFileId());
+        helperService.validateFileAvailable(file);
 
-        String encodedFilename = URLEncoder.encode(file.getName(), StandardCharsets.UTF_8)
-                .replaceAll("\\+", "%20");
+        log.info("Начинается неблокирующее скачивание файла {} пользователем {}", file.getName(), user.getEmail());
 
-        return ResponseEntity.ok()
-                .header("Content-Disposition", "attachment; filename*=UTF-8''" + encodedFilename)
-                .header("Content-Type", file.getContentType() != null ? file.getContentType() : "application/octet-stream")
-                .contentLength(file.getSize())
-                .body(resource);
+        return fileDownloadService.downloadStream(file, request);
     }
 
-    private Mono<Void> uploadFileAsync(String s3Key, File file, String contentType) throws Exception {
-        long size = file.length();
+    @Override
+    public ResponseEntity<InputStreamResource> getThumbnail(Long fileId, int size, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        cloud.storage.fileservice.models.File file = helperService.validateAndGetFile(user, fileId);
+        helperService.validateFileAvailable(file);
+        if (!renditionService.renderable(file)) throw new FileNotFoundException("File has no thumbnail");
+
+        return renditionService.find(file, size)
+                .map(renditionService::serve)
+                .orElseGet(() -> {
+                    // Генерация могла быть отброшена при переполненной очереди — ставим снова
+                    renditionService.schedule(file);
+                    throw new FileNotAvailableException("Thumbnail is not ready yet");
+                });
+    }
 
-        // Определяем размер буфера: 10 MB для маленьких файлов, 50 MB для больших
-        int bufferSize = size > MULTIPART_THRESHOLD ? 50 * 1024 * 1024 : 10 * 1024 * 1024;
+    @Override
+    public PresignedDownloadResponse getDownloadUrl(Long fileId, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        cloud.storage.fileservice.models.File file = helperService.validateAndGetFile(user, fileId);
+        helperService.validateFileAvailable(file);
+        return fileDownloadService.presignedDownload(file);
+    }
 
-        InputStream inputStream = new FileInputStream(file);
+    @Override
+    public ResponseEntity<StreamingResponseBody> downloadFolderArchive(DownloadFolderArchiveRequest request, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        Folder folder = helperService.validateAndGetFolder(user, request.getFolderId());
+
+        log.info("Начинается скачивание архива папки {} пользователем {}", folder.getName(), user.getEmail());
+
+        return folderArchiveService.archive(user, folder, request.isRecursive());
+    }
+
+    // Метаданные пишутся короткой транзакцией уже после передачи в S3, соединение с БД не держится на время загрузки
+    private UploadFileResponse saveUploadedFile(User user, Folder folder, String fileName, String contentType,
+                                                StoredContent content, String expectedSha256) {
+        String s3Key = content.s3Key();
+        if (expectedSha256 != null && !expectedSha256.isBlank() && !expectedSha256.equalsIgnoreCase(content.sha256())) {
+            FileUploadException mismatch = new FileUploadException("Content SHA-256 does not match X-Content-SHA256", null);
+            discardUploaded(s3Key, mismatch);
+            throw mismatch;
+        }
+
+        cloud.storage.fileservice.models.File saved;
+        try {
+            saved = transactionTemplate.execute(status -> {
+                Blob blob = blobService.attach(content.sha256(), s3Key, content.size());
+                return fileRepository.save(cloud.storage.fileservice.models.File.builder()
+                        .name(fileName)
+                        .s3Key(blob.getS3Key())
+                        .blob(blob)
+                        .size(content.size())
+                        .checksumCrc32c(content.crc32c())
+                        .contentType(contentType)
+                        .user(user)
+                        .folder(folder)
+                        .build());
+            });
+        } catch (RuntimeException e) {
+            // Метаданные не сохранились — не оставляем объект-сироту в S3
+            discardUploaded(s3Key, e);
+            throw e;
+        }
+
+        // Такое содержимое уже хранилось — только что загруженный дубликат не нужен; ответ удаления не ждет
+        if (!s3Key.equals(saved.getS3Key())) objectDeletionOutbox.enqueue(s3Key);
+        // Миниатюры — в фоне, после фиксации строки: ответ на загрузку их не ждет
+        renditionService.schedule(saved);
+        return new UploadFileResponse(true, saved.getId(), saved.getStatus());
+    }
+
+    // Удаление через outbox; его сбой не должен подменять исходную ошибку загрузки
+    private void discardUploaded(String s3Key, RuntimeException cause) {
+        try {
+            objectDeletionOutbox.enqueue(s3Key);
+        } catch (RuntimeException e) {
+            log.error("Не удалось поставить объект {} в очередь на удаление: {}", s3Key, e.getMessage());
+            cause.addSuppressed(e);
+        }
+    }
+
+    // Пользователь уже хранит файл с таким содержимым: новая строка ссылается на тот же объект, байты не передаются
+    private Optional<UploadFileResponse> saveKnownContent(User user, Folder folder, String fileName, String contentType, String sha256) {
+        return blobService.findOwnedContent(user, sha256).map(existing -> transactionTemplate.execute(status -> {
+            Blob blob = existing.getBlob();
+            if (!blobService.reference(blob)) return null;
+            cloud.storage.fileservice.models.File saved = fileRepository.save(cloud.storage.fileservice.models.File.builder()
+                    .name(fileName)
+                    .s3Key(blob.getS3Key())
+                    .blob(blob)
+                    .size(blob.getSize())
+                    .checksumCrc32c(existing.getChecksumCrc32c())
+                    .contentType(contentType)
+                    .user(user)
+                    .folder(folder)
+                    .build());
+            log.info("Файл {} пользователя {} сохранен без передачи: содержимое уже хранится", fileName, user.getEmail());
+            return new UploadFileResponse(true, saved.getId(), saved.getStatus());
+        }));
+    }
 
-        // Преобразуем InputStream во Flux<DataBuffer>
-        var dataBufferFlux = DataBufferUtils.readInputStream(
-                () -> inputStream,
-                new DefaultDataBufferFactory(),
-                bufferSize
-        );
+    // Загруженный в S3 объект: ключ, размер, SHA-256 (hex) и CRC32C (base64)
+    private record StoredContent(String s3Key, long size, String sha256, String crc32c) {}
 
-        // Отправляем поток в S3
-        return s3AsyncService.uploadStreamInParts(s3Key, dataBufferFlux, contentType);
+    private Mono<String> uploadToS3(String s3Key, Flux<DataBuffer> dataStream, long contentLength, String contentType, Long ownerId) {
+        // Отправляем поток в S3; по известному размеру S3AsyncService подбирает размер части
+        return s3AsyncService.uploadStreamInParts(s3Key, dataStream, contentLength, contentType, ownerId);
     }
 }
@@ -0,0 +1,241 @@
+package cloud.storage.fileservice.services;
+
+import cloud.storage.fileservice.configuration.DownloadProperties;
+import cloud.storage.fileservice.models.File;
+import cloud.storage.fileservice.models.FileStatus;
+import cloud.storage.fileservice.models.Folder;
+import cloud.storage.fileservice.models.User;
+import cloud.storage.fileservice.repository.FileRepository;
+import cloud.storage.fileservice.repository.FolderRepository;
+import cloud.storage.fileservice.services.S3Services.S3AsyncService;
+import cloud.storage.fileservice.services.bandwidth.BandwidthShaper;
+import cloud.storage.fileservice.services.bandwidth.BandwidthShaper.Direction;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.attribute.FileTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ZIP-архив папки, который пишется в ответ по мере чтения файлов из S3.
+ * Небольшие файлы читаются заранее пачками (до archivePrefetch файлов и archivePrefetchBytes байт) и целиком
+ * в память: их GET завершается сразу и не простаивает, пока медленный клиент получает предыдущие записи.
+ * Крупный файл читается потоком, и его GET открывается только тогда, когда до него дошла очередь,
+ * поэтому расход памяти не зависит от размера архива, а открытые ответы S3 не упираются в таймаут чтения.
+ */
+@Service
+@RequiredArgsConstructor
+public class FolderArchiveService {
+
+    private static final int BUFFERS_PER_FILE = 16;
+    private static final int COPY_CHUNK = 64 * 1024;
+
+    // Уже сжатые форматы: повторное сжатие только тратит CPU
+    private static final Set<String> COMPRESSED_TYPES = Set.of(
+            "image/jpeg", "image/png", "image/gif", "image/webp", "image/avif", "image/heic",
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-7z-compressed",
+            "application/x-rar-compressed", "application/vnd.rar", "application/x-bzip2", "application/x-xz",
+            "application/zstd", "application/java-archive", "application/epub+zip"
+    );
+    private static final List<String> COMPRESSED_PREFIXES = List.of(
+            "video/", "audio/", "application/vnd.openxmlformats-officedocument.", "application/vnd.oasis.opendocument."
+    );
+
+    private final FileRepository fileRepository;
+    private final FolderRepository folderRepository;
+    private final S3AsyncService s3AsyncService;
+    private final DownloadProperties downloadProperties;
+    private final BandwidthShaper bandwidthShaper;
+
+    private record Entry(String path, File file) {
+    }
+
+    // Кусок содержимого записи архива; data == null — начало новой записи
+    private record Piece(Entry entry, ByteBuffer data) {
+    }
+
+    /**
+     * Список файлов выбирается сразу (ошибки доступа — до начала ответа), содержимое читается при записи тела
+     */
+    public ResponseEntity<StreamingResponseBody> archive(User user, Folder folder, boolean recursive) {
+        Map<Long, String> folderPaths = recursive ? folderPaths(folder.getId()) : Map.of(folder.getId(), "");
+        List<Entry> entries = entries(user, folderPaths);
+
+        String encodedFilename = URLEncoder.encode(folder.getName() + ".zip", StandardCharsets.UTF_8)
+                .replaceAll("\\+", "%20");
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, "application/zip")
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + encodedFilename)
+                .body(out -> write(user.getId(), folderPaths.values(), entries, out));
+    }
+
+    // Путь каждой папки поддерева относительно корня архива ("" — сама папка, "docs/2024/" — вложенная)
+    private Map<Long, String> folderPaths(Long rootId) {
+        Map<Long, String> paths = new LinkedHashMap<>();
+        for (Object[] row : folderRepository.findSubtree(rootId)) {
+            Long id = ((Number) row[0]).longValue();
+            if (id.equals(rootId)) {
+                paths.put(id, "");
+                continue;
+            }
+            Long parentId = ((Number) row[1]).longValue();
+            paths.put(id, paths.get(parentId) + entryName((String) row[2]) + "/");
+        }
+        return paths;
+    }
+
+    private List<Entry> entries(User user, Map<Long, String> folderPaths) {
+        Set<String> used = new HashSet<>(folderPaths.values());
+        List<Entry> entries = new ArrayList<>();
+        for (File file : fileRepository.findInFolders(user, folderPaths.keySet(), FileStatus.AVAILABLE)) {
+            String path = uniquePath(used, folderPaths.get(file.getFolder().getId()) + entryName(file.getName()));
+            entries.add(new Entry(path, file));
+        }
+        return entries;
+    }
+
+    private void write(Long userId, Collection<String> folderPaths, List<Entry> entries, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        // Пустые вложенные папки тоже попадают в архив
+        for (String folderPath : folderPaths) {
+            if (folderPath.isEmpty()) continue;
+            zip.putNextEntry(new ZipEntry(folderPath));
+            zip.closeEntry();
+        }
+
+        byte[] copyBuffer = new byte[COPY_CHUNK];
+        // Закрытие потока отменяет подписку: при обрыве соединения чтение из S3 прекращается
+        try (Stream<Piece> pieces = content(userId, entries).toStream(BUFFERS_PER_FILE)) {
+            Iterator<Piece> iterator = pieces.iterator();
+            while (iterator.hasNext()) {
+                Piece piece = iterator.next();
+                if (piece.data() == null) {
+                    startEntry(zip, piece.entry());
+                    continue;
+                }
+                ByteBuffer data = piece.data();
+                while (data.hasRemaining()) {
+                    int length = Math.min(data.remaining(), copyBuffer.length);
+                    data.get(copyBuffer, 0, length);
+                    zip.write(copyBuffer, 0, length);
+                }
+            }
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    /**
+     * Содержимое всех файлов по порядку; следующая пачка запрашивается, когда дописана предыдущая
+     */
+    private Flux<Piece> content(Long userId, List<Entry> entries) {
+        return Flux.fromIterable(batches(entries))
+                .concatMap(batch -> batch.size() == 1 && !prefetchable(batch.get(0).file())
+                        ? streamed(userId, batch.get(0))
+                        : prefetched(userId, batch));
+    }
+
+    // Подряд идущие небольшие файлы собираются в пачки; крупный файл — отдельная пачка
+    private List<List<Entry>> batches(List<Entry> entries) {
+        int maxFiles = downloadProperties.getArchivePrefetch() + 1;
+        List<List<Entry>> batches = new ArrayList<>();
+        List<Entry> batch = new ArrayList<>();
+        long batchBytes = 0;
+        for (Entry entry : entries) {
+            long size = entry.file().getSize();
+            if (!prefetchable(entry.file())) {
+                if (!batch.isEmpty()) batches.add(batch);
+                batches.add(List.of(entry));
+                batch = new ArrayList<>();
+                batchBytes = 0;
+                continue;
+            }
+            if (batch.size() >= maxFiles || batchBytes + size > downloadProperties.getArchivePrefetchBytes()) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchBytes = 0;
+            }
+            batch.add(entry);
+            batchBytes += size;
+        }
+        if (!batch.isEmpty()) batches.add(batch);
+        return batches;
+    }
+
+    private boolean prefetchable(File file) {
+        return file.getSize() <= downloadProperties.getArchivePrefetchBytes();
+    }
+
+    // Файлы пачки читаются параллельно и целиком: GET не ждет, пока клиент дочитает предыдущие записи
+    private Flux<Piece> prefetched(Long userId, List<Entry> batch) {
+        return Flux.fromIterable(batch)
+                .flatMapSequential(entry -> fileContent(userId, entry.file())
+                                .collectList()
+                                .flatMapMany(data -> Flux.concat(
+                                        Mono.just(new Piece(entry, null)),
+                                        Flux.fromIterable(data).map(buffer -> new Piece(entry, buffer)))),
+                        batch.size(), 1);
+    }
+
+    private Flux<Piece> streamed(Long userId, Entry entry) {
+        return Flux.concat(
+                Mono.just(new Piece(entry, null)),
+                fileContent(userId, entry.file()).map(data -> new Piece(entry, data)));
+    }
+
+    private Flux<ByteBuffer> fileContent(Long userId, File file) {
+        if (file.getSize() == 0) return Flux.empty();
+        return bandwidthShaper.throttle(userId, Direction.DOWNLOAD,
+                s3AsyncService.downloadRange(file.getS3Key(), 0, file.getSize() - 1));
+    }
+
+    // Для уже сжатых форматов — DEFLATE без сжатия: STORED требует CRC32 до записи данных, а он заранее неизвестен
+    private void startEntry(ZipOutputStream zip, Entry entry) throws IOException {
+        File file = entry.file();
+        zip.setLevel(isCompressed(file.getContentType()) ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+        ZipEntry zipEntry = new ZipEntry(entry.path());
+        zipEntry.setSize(file.getSize());
+        zipEntry.setLastModifiedTime(FileTime.from(file.getUploadedAt().toInstant(ZoneOffset.UTC)));
+        zip.putNextEntry(zipEntry);
+    }
+
+    private boolean isCompressed(String contentType) {
+        if (contentType == null) return false;
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return COMPRESSED_TYPES.contains(type) || COMPRESSED_PREFIXES.stream().anyMatch(type::startsWith);
+    }
+
+    // Имена из БД не должны выводить запись за пределы архива
+    private String entryName(String name) {
+        String safe = name.replace('/', '_').replace('\\', '_');
+        return safe.equals(".") || safe.equals("..") ? "_" : safe;
+    }
+
+    // Одинаковые имена (например, у файлов в одноименных папках) получают суффикс " (n)"
+    private String uniquePath(Set<String> used, String path) {
+        if (used.add(path)) return path;
+        int dot = path.lastIndexOf('.');
+        boolean hasExtension = dot > path.lastIndexOf('/') + 1;
+        String base = hasExtension ? path.substring(0, dot) : path;
+        String extension = hasExtension ? path.substring(dot) : "";
+        for (int i = 1; ; i++) {
+            String candidate = base + " (" + i + ")" + extension;
+            if (used.add(candidate)) return candidate;
+        }
+    }
+}
@@ -3,17 +3,31 @@ package cloud.storage.fileservice.services;
 import cloud.storage.fileservice.configuration.jwt.CustomUserPrincipal;
 import cloud.storage.fileservice.customExceptions.*;
 import cloud.storage.fileservice.models.File;
+import cloud.storage.fileservice.models.FileStatus;
 import cloud.storage.fileservice.models.Folder;
 import cloud.storage.fileservice.models.User;
 import cloud.storage.fileservice.repository.FileRepository;
 import cloud.storage.fileservice.services.grpc.FolderGrpcClient;
 import lombok.RequiredArgsConstructor;
 import org.apache.tika.Tika;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.HexFormat;
 import java.util.UUID;
 
 import folderservice.Folder.*;
@@ -22,6 +36,10 @@ import folderservice.Folder.*;
 @RequiredArgsConstructor
 public class HelperService {
 
+    // Буфер чтения входного потока: данные все равно копируются в буферы пула частей,
+    // поэтому большой буфер чтения только создает лишний мусор
+    private static final int READ_BUFFER_SIZE = 256 * 1024;
+
     private final FileRepository fileRepository;
 
     private final Tika tika = new Tika();
@@ -70,12 +88,23 @@ public class HelperService {
         return file;
     }
 
+    public void validateFileAvailable(File file) {
+        if (file.getStatus() != FileStatus.AVAILABLE)
+            throw new FileNotAvailableException("File is not available yet, status: " + file.getStatus());
+    }
+
     public void validateFileNotEmpty(MultipartFile file){
         if(file == null || file.isEmpty()){
             throw new FileUploadException("No file provided for upload", null);
         }
     }
 
+    public void validateStreamNotEmpty(String fileName, long contentLength){
+        if(fileName == null || fileName.isBlank() || contentLength == 0){
+            throw new FileUploadException("No file provided for upload", null);
+        }
+    }
+
     public void validateFileNameUniq(User user, Folder folder, String fileName) {
         if (fileRepository.existsByNameAndFolderAndUser(fileName, folder, user))
             throw new FileAlreadyExistsException("File with that name already exists");
@@ -85,6 +114,19 @@ public class HelperService {
         return UUID.randomUUID() + "_" + fileName;
     }
 
+    // Сильный ETag по сохраненной при загрузке CRC32C содержимого; у файлов без суммы — по ключу объекта,
+    // который после загрузки не меняется и однозначно задает версию
+    public String eTag(File file) {
+        if (file.getChecksumCrc32c() != null) {
+            return "\"" + HexFormat.of().formatHex(Base64.getDecoder().decode(file.getChecksumCrc32c())) + "\"";
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(file.getS3Key().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    public Instant lastModified(File file) {
+        return file.getUploadedAt().toInstant(ZoneOffset.UTC);
+    }
+
     public String detectMimeType(String fileName) {
         try {
             return tika.detect(fileName);
@@ -92,4 +134,23 @@ public class HelperService {
             return "application/octet-stream";
         }
     }
+
+    public Flux<DataBuffer> readStream(InputStream inputStream) {
+        // Преобразуем InputStream во Flux<DataBuffer>; чтение блокирующее, поэтому выносим его с потоков S3-клиента
+        return DataBufferUtils.readInputStream(
+                        () -> inputStream,
+                        DefaultDataBufferFactory.sharedInstance,
+                        READ_BUFFER_SIZE
+                )
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // Поток закрывается и там, где его так и не начали читать: от close() зависит, например, снятие лимита полосы
+    public void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException ignored) {
+            // Тело запроса уже не нужно
+        }
+    }
 }
@@ -0,0 +1,245 @@
+package cloud.storage.fileservice.services;
+
+import cloud.storage.fileservice.configuration.RenditionProperties;
+import cloud.storage.fileservice.models.File;
+import cloud.storage.fileservice.models.Rendition;
+import cloud.storage.fileservice.repository.FileRepository;
+import cloud.storage.fileservice.repository.RenditionRepository;
+import cloud.storage.fileservice.services.S3Services.S3Service;
+import cloud.storage.fileservice.services.deletion.ObjectDeletionOutbox;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Миниатюры изображений: генерируются после загрузки на отдельном ограниченном пуле потоков
+ * и хранятся в S3 как производные объекты, привязанные к строке files.
+ * Загрузку генерация не задерживает: при переполнении очереди задача отбрасывается
+ * и будет поставлена снова при первом запросе миниатюры.
+ */
+@Service
+public class RenditionService {
+
+    private static final Logger log = LoggerFactory.getLogger(RenditionService.class);
+
+    private static final Set<String> RENDERABLE_TYPES = Set.of("image/jpeg", "image/png", "image/gif", "image/bmp");
+
+    private final RenditionProperties properties;
+    private final RenditionRepository renditionRepository;
+    private final FileRepository fileRepository;
+    private final S3Service s3Service;
+    private final ObjectDeletionOutbox objectDeletionOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor executor;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final Counter generated;
+    private final Counter failed;
+    private final Counter rejected;
+
+    public RenditionService(RenditionProperties properties, RenditionRepository renditionRepository,
+                            FileRepository fileRepository, S3Service s3Service, ObjectDeletionOutbox objectDeletionOutbox,
+                            TransactionTemplate transactionTemplate, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.renditionRepository = renditionRepository;
+        this.fileRepository = fileRepository;
+        this.s3Service = s3Service;
+        this.objectDeletionOutbox = objectDeletionOutbox;
+        this.transactionTemplate = transactionTemplate;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                properties.getWorkers(), properties.getWorkers(), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                task -> {
+                    Thread thread = new Thread(task, "rendition-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.generated = Counter.builder("storage.rendition.generated").register(meterRegistry);
+        this.failed = Counter.builder("storage.rendition.failed").register(meterRegistry);
+        this.rejected = Counter.builder("storage.rendition.rejected")
+                .description("Задачи, отброшенные из-за переполненной очереди")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean renderable(File file) {
+        return properties.isEnabled()
+                && file.getContentType() != null
+                && RENDERABLE_TYPES.contains(file.getContentType().toLowerCase(Locale.ROOT))
+                && file.getSize() <= properties.getMaxSourceSize();
+    }
+
+    /**
+     * Постановка генерации в очередь; не блокирует и не бросает исключений
+     */
+    public void schedule(File file) {
+        if (!renderable(file) || !inFlight.add(file.getId())) return;
+        Long fileId = file.getId();
+        String s3Key = file.getS3Key();
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(fileId, s3Key);
+                } finally {
+                    inFlight.remove(fileId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(fileId);
+            rejected.increment();
+            log.warn("Rendition queue is full, file id={} skipped", fileId);
+        }
+    }
+
+    /**
+     * Наименьшая миниатюра не меньше запрошенного размера (или самая крупная из имеющихся)
+     */
+    public Optional<Rendition> find(File file, int size) {
+        List<Rendition> renditions = renditionRepository.findByFileIdOrderBySize(file.getId());
+        return renditions.stream()
+                .filter(rendition -> rendition.getSize() >= size)
+                .findFirst()
+                .or(() -> renditions.isEmpty() ? Optional.empty() : Optional.of(renditions.get(renditions.size() - 1)));
+    }
+
+    public ResponseEntity<InputStreamResource> serve(Rendition rendition) {
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, rendition.getContentType())
+                .contentLength(rendition.getByteSize())
+                .eTag("\"" + rendition.getId() + "-" + rendition.getSize() + "\"")
+                .cacheControl(CacheControl.maxAge(properties.getCacheMaxAge()).cachePrivate().immutable())
+                .body(new InputStreamResource(s3Service.downloadFile(rendition.getS3Key())));
+    }
+
+    /**
+     * Удаление миниатюр файла; вызывается в транзакции удаления до удаления строки files
+     */
+    public void deleteFor(File file) {
+        List<String> keys = renditionRepository.findS3KeysByFileId(file.getId());
+        if (keys.isEmpty()) return;
+        renditionRepository.deleteByFileId(file.getId());
+        objectDeletionOutbox.enqueue(keys);
+    }
+
+    private void generate(Long fileId, String sourceKey) {
+        List<String> uploaded = new ArrayList<>();
+        try {
+            if (!renditionRepository.findByFileIdOrderBySize(fileId).isEmpty()) return;
+            BufferedImage source = read(sourceKey, Collections.max(properties.getSizes()));
+            if (source == null) return;
+
+            // Ключи уникальны для попытки: проигравшая гонку генерация удаляет только свои объекты
+            String attempt = UUID.randomUUID().toString();
+            List<Rendition> renditions = new ArrayList<>();
+            int longSide = Math.max(source.getWidth(), source.getHeight());
+            for (int size : new TreeSet<>(properties.getSizes())) {
+                // Без увеличения: для маленького изображения остается одна миниатюра в исходном размере
+                int target = Math.min(size, longSide);
+                boolean alpha = source.getColorModel().hasAlpha();
+                byte[] content = encode(scale(source, target), alpha);
+                String key = "renditions/" + fileId + "/" + attempt + "/" + size + (alpha ? ".png" : ".jpg");
+                s3Service.uploadBytes(key, content, alpha ? "image/png" : "image/jpeg");
+                uploaded.add(key);
+                renditions.add(Rendition.builder()
+                        .file(fileRepository.getReferenceById(fileId))
+                        .size(size)
+                        .s3Key(key)
+                        .contentType(alpha ? "image/png" : "image/jpeg")
+                        .byteSize((long) content.length)
+                        .build());
+                if (target == longSide) break;
+            }
+            transactionTemplate.executeWithoutResult(status -> renditionRepository.saveAll(renditions));
+            generated.increment();
+        } catch (DataIntegrityViolationException e) {
+            // Файл удалили во время генерации (или миниатюры уже создал параллельный запрос)
+            uploaded.forEach(s3Service::deleteFile);
+        } catch (Exception e) {
+            failed.increment();
+            uploaded.forEach(s3Service::deleteFile);
+            log.warn("Failed to generate renditions for file id={}: {}", fileId, e.getMessage());
+        }
+    }
+
+    // Крупное изображение декодируется с прореживанием: в памяти не больше, чем нужно для самой большой миниатюры
+    private BufferedImage read(String key, int maxSize) throws IOException {
+        try (InputStream content = s3Service.downloadFile(key);
+             ImageInputStream input = ImageIO.createImageInputStream(content)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int longSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int subsampling = Math.max(1, longSide / (2 * maxSize));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Уменьшение вдвое за шаг, пока до цели больше чем в два раза: билинейная интерполяция за один шаг дает муар
+    private BufferedImage scale(BufferedImage source, int longSide) {
+        BufferedImage current = source;
+        int currentLong = Math.max(source.getWidth(), source.getHeight());
+        do {
+            int nextLong = Math.max(longSide, currentLong / 2);
+            double ratio = (double) nextLong / currentLong;
+            int width = Math.max(1, (int) Math.round(current.getWidth() * ratio));
+            int height = Math.max(1, (int) Math.round(current.getHeight() * ratio));
+            int type = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+            BufferedImage next = new BufferedImage(width, height, type);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+            currentLong = nextLong;
+        } while (currentLong > longSide);
+        return current;
+    }
+
+    private byte[] encode(BufferedImage image, boolean alpha) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (!ImageIO.write(image, alpha ? "png" : "jpg", out)) throw new IOException("No image writer available");
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,103 @@
+package cloud.storage.fileservice.services.S3Services;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Ограничитель параллельности частей одной загрузки (AIMD).
+ * После каждого окна из limit завершенных частей сравнивает пропускную способность с предыдущим окном:
+ * рост — лимит +1, падение при выросшей задержке — лимит уменьшается на четверть.
+ */
+final class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final Deque<MonoSink<Void>> waiters = new ArrayDeque<>();
+
+    private int limit;
+    private int inUse;
+
+    // Наблюдения текущего окна
+    private long windowStart = System.nanoTime();
+    private long windowBytes;
+    private long windowLatency;
+    private int windowParts;
+    private double previousThroughput;
+    private long minLatency = Long.MAX_VALUE;
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(Math.max(initialLimit, this.minLimit), this.maxLimit);
+    }
+
+    int maxLimit() {
+        return maxLimit;
+    }
+
+    synchronized int limit() {
+        return limit;
+    }
+
+    Mono<Void> acquire() {
+        return Mono.create(sink -> {
+            boolean granted;
+            synchronized (this) {
+                granted = inUse < limit;
+                if (granted) inUse++;
+                else waiters.addLast(sink);
+            }
+            if (granted) sink.success();
+            else sink.onCancel(() -> {
+                synchronized (this) {
+                    waiters.remove(sink);
+                }
+            });
+        });
+    }
+
+    // Часть отправлена: учитываем ее в окне наблюдений и освобождаем слот
+    void onPartCompleted(long bytes, long latencyNanos) {
+        synchronized (this) {
+            windowBytes += bytes;
+            windowLatency += latencyNanos;
+            windowParts++;
+            minLatency = Math.min(minLatency, latencyNanos);
+            if (windowParts >= limit) adjust();
+        }
+        release();
+    }
+
+    void release() {
+        MonoSink<Void> next = null;
+        synchronized (this) {
+            inUse--;
+            if (inUse < limit) {
+                next = waiters.pollFirst();
+                if (next != null) inUse++;
+            }
+        }
+        if (next != null) next.success();
+    }
+
+    private void adjust() {
+        long now = System.nanoTime();
+        double throughput = windowBytes / (double) Math.max(1, now - windowStart);
+        long averageLatency = windowLatency / windowParts;
+
+        if (throughput > previousThroughput * 1.05) {
+            limit = Math.min(maxLimit, limit + 1);
+        } else if (averageLatency > 2 * minLatency) {
+            limit = Math.max(minLimit, limit - Math.max(1, limit / 4));
+        }
+
+        previousThroughput = throughput;
+        windowStart = now;
+        windowBytes = 0;
+        windowLatency = 0;
+        windowParts = 0;
+    }
+}
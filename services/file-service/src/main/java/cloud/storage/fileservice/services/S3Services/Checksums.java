@@ -0,0 +1,23 @@
+package cloud.storage.fileservice.services.S3Services;
+
+import java.util.Base64;
+
+/**
+ * Представление контрольных сумм в формате S3
+ */
+public final class Checksums {
+
+    private Checksums() {
+    }
+
+    // 32-битная сумма (CRC32/CRC32C) -> base64 от 4 байт big-endian, как в заголовках x-amz-checksum-*
+    public static String toBase64(long crc) {
+        byte[] bytes = {
+                (byte) (crc >>> 24),
+                (byte) (crc >>> 16),
+                (byte) (crc >>> 8),
+                (byte) crc
+        };
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,99 @@
+package cloud.storage.fileservice.services.S3Services;
+
+import cloud.storage.fileservice.services.S3Services.UploadPartScheduler.PartPermit;
+import org.springframework.core.io.buffer.DataBuffer;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Собирает входящий поток DataBuffer в части заданного размера.
+ * Каждая новая часть открывается только после свободного слота AdaptiveConcurrencyLimiter и разрешения
+ * UploadPartScheduler, поэтому при исчерпанном бюджете или лимите параллельности чтение источника
+ * приостанавливается. Попутно считается CRC32C всего объекта. Состояние на одну загрузку; вызывается последовательно.
+ */
+final class PartAssembler {
+
+    private final PartBufferPool pool;
+    private final UploadPartScheduler scheduler;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Long ownerId;
+    private final long partSize;
+    private final CRC32C objectChecksum = new CRC32C();
+
+    private int nextPartNumber = 1;
+    private UploadPart current;
+    private PartPermit pendingPermit;
+
+    PartAssembler(PartBufferPool pool, UploadPartScheduler scheduler, AdaptiveConcurrencyLimiter limiter, Long ownerId, long partSize) {
+        this.pool = pool;
+        this.scheduler = scheduler;
+        this.limiter = limiter;
+        this.ownerId = ownerId;
+        this.partSize = partSize;
+    }
+
+    // Дописывает данные в текущую часть и выдает части, которые заполнились
+    Flux<UploadPart> append(DataBuffer data) {
+        List<ByteBuffer> sources = new ArrayList<>(1);
+        try (DataBuffer.ByteBufferIterator iterator = data.readableByteBuffers()) {
+            iterator.forEachRemaining(sources::add);
+        }
+        return drain(sources);
+    }
+
+    private Flux<UploadPart> drain(List<ByteBuffer> sources) {
+        return Flux.defer(() -> {
+            List<UploadPart> completed = new ArrayList<>(1);
+            for (ByteBuffer src : sources) {
+                while (src.hasRemaining()) {
+                    if (current == null) {
+                        if (pendingPermit == null) {
+                            // Сначала отдаем готовые части, затем ждем слот и бюджет под следующую — без удержания недособранной
+                            return Flux.fromIterable(completed)
+                                    .concatWith(limiter.acquire()
+                                            .then(scheduler.acquire(ownerId, partSize))
+                                            .doOnNext(permit -> pendingPermit = permit)
+                                            .thenMany(drain(sources)));
+                        }
+                        current = new UploadPart(nextPartNumber++, partSize, pool, pendingPermit, objectChecksum);
+                        pendingPermit = null;
+                    }
+                    current.write(src);
+                    if (current.isFull()) {
+                        completed.add(current);
+                        current = null;
+                    }
+                }
+            }
+            return Flux.fromIterable(completed);
+        });
+    }
+
+    // Последняя (неполная) часть после окончания потока
+    UploadPart finish() {
+        UploadPart last = current;
+        current = null;
+        return last;
+    }
+
+    // CRC32C всех принятых байт; после finish() — контрольная сумма объекта
+    String objectChecksum() {
+        return Checksums.toBase64(objectChecksum.getValue());
+    }
+
+    // Освобождение недособранной части и неиспользованного разрешения при ошибке или отмене
+    void releasePending() {
+        if (current != null) {
+            current.release();
+            current = null;
+        }
+        if (pendingPermit != null) {
+            pendingPermit.release();
+            pendingPermit = null;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package cloud.storage.fileservice.services.S3Services;
+
+import cloud.storage.fileservice.configuration.UploadProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пул переиспользуемых буферов (слэбов) фиксированного размера, из которых собираются части multipart upload.
+ * Свободные буферы хранятся до poolMaxIdleSlabs штук, остальные отдаются GC.
+ */
+@Component
+public class PartBufferPool {
+
+    private final int slabSize;
+    private final boolean direct;
+    private final BlockingQueue<ByteBuffer> idle;
+
+    private final AtomicLong inUse = new AtomicLong();
+    private final AtomicLong allocated = new AtomicLong();
+
+    public PartBufferPool(UploadProperties uploadProperties, MeterRegistry meterRegistry) {
+        this.slabSize = uploadProperties.getSlabSize();
+        this.direct = uploadProperties.isDirectBuffers();
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, uploadProperties.getPoolMaxIdleSlabs()));
+
+        Gauge.builder("storage.upload.buffer.pool.idle", idle, BlockingQueue::size)
+                .description("Свободные буферы в пуле")
+                .register(meterRegistry);
+        Gauge.builder("storage.upload.buffer.pool.in-use", inUse, AtomicLong::get)
+                .description("Буферы, занятые собираемыми и отправляемыми частями")
+                .register(meterRegistry);
+        Gauge.builder("storage.upload.buffer.pool.allocated", allocated, AtomicLong::get)
+                .description("Всего выделено буферов с момента старта")
+                .register(meterRegistry);
+    }
+
+    public int getSlabSize() {
+        return slabSize;
+    }
+
+    public ByteBuffer acquire() {
+        inUse.incrementAndGet();
+        ByteBuffer buffer = idle.poll();
+        if (buffer != null) return buffer;
+
+        allocated.incrementAndGet();
+        return direct ? ByteBuffer.allocateDirect(slabSize) : ByteBuffer.allocate(slabSize);
+    }
+
+    // Возврат буфера в пул; если пул заполнен — буфер просто отбрасывается
+    public void release(ByteBuffer buffer) {
+        inUse.decrementAndGet();
+        buffer.clear();
+        idle.offer(buffer);
+    }
+
+    // Буфер мог остаться у SDK (отмена запроса), поэтому в пул его не возвращаем
+    public void discard(ByteBuffer buffer) {
+        inUse.decrementAndGet();
+    }
+
+    public long getInUse() {
+        return inUse.get();
+    }
+
+    public int getIdle() {
+        return idle.size();
+    }
+}
@@ -5,6 +5,37 @@ import reactor.core.publisher.Mono;
 
 import org.springframework.core.io.buffer.DataBuffer;
 
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+
 public interface S3AsyncService {
-    Mono<Void> uploadStreamInParts(String key, Flux<DataBuffer> dataStream, String contentType);
+    /**
+     * Загрузка потока в S3: объекты не больше singlePutThreshold уходят одним PutObject,
+     * остальные — через multipart upload. Возвращает CRC32C всего объекта (base64)
+     */
+    Mono<String> uploadStreamInParts(String key, Flux<DataBuffer> dataStream, long contentLength, String contentType, Long ownerId);
+
+    // Отдельные шаги multipart upload для возобновляемых загрузок; при ошибке части загрузка не прерывается
+    Mono<String> createMultipartUpload(String key, String contentType);
+    Mono<String> uploadPart(String key, String uploadId, int partNumber, Flux<DataBuffer> dataStream, long contentLength, Long ownerId);
+    Mono<Void> completeMultipartUpload(String key, String uploadId, Map<Integer, String> partETags);
+    Mono<Void> abortMultipartUpload(String key, String uploadId);
+    Flux<StoredPart> listParts(String key, String uploadId);
+
+    /**
+     * Диапазон [start, end] объекта, прочитанный параллельными ranged GET и собранный по порядку
+     */
+    Flux<ByteBuffer> downloadRangeParallel(String key, long start, long end);
+
+    /**
+     * Диапазон [start, end] объекта одним GetObject в виде потока с обратным давлением
+     */
+    Flux<ByteBuffer> downloadRange(String key, long start, long end);
+
+    /**
+     * Удаление объектов через DeleteObjects пачками до 1000 ключей; пачки отправляются параллельно.
+     * Возвращает ключи, которые удалить не удалось, с причиной
+     */
+    Mono<Map<String, String>> deleteObjects(Collection<String> keys);
 }
@@ -1,7 +1,9 @@
 package cloud.storage.fileservice.services.S3Services;
 
+import cloud.storage.fileservice.configuration.DownloadProperties;
 import cloud.storage.fileservice.configuration.S3Configuration;
 import cloud.storage.fileservice.customExceptions.S3UploadException;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.buffer.DataBuffer;
@@ -9,145 +11,337 @@ import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 import reactor.core.scheduler.Schedulers;
+import software.amazon.awssdk.core.ResponseBytes;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.model.*;
 
+import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class S3AsyncServiceImpl implements S3AsyncService {
 
+    private static final int MAX_DELETE_BATCH = 1000; // предел S3 на число ключей в одном DeleteObjects
+    private static final int DELETE_CONCURRENCY = 4;
+
     private final S3Configuration s3Configuration;
     private final S3AsyncClient s3AsyncClient;
-
-    private static final long PART_SIZE = 50L * 1024 * 1024; // 50 MB
+    private final PartBufferPool partBufferPool;
+    private final UploadPartScheduler uploadPartScheduler;
+    private final UploadPlanner uploadPlanner;
+    private final DownloadProperties downloadProperties;
+    private final MeterRegistry meterRegistry;
 
     @Override
-    public Mono<Void> uploadStreamInParts(String key, Flux<DataBuffer> dataStream, String contentType) {
-        String bucket = s3Configuration.getBucket();
-
-        // 1 Создание multipart upload
-        Mono<CreateMultipartUploadResponse> createUploadMono =
-                Mono.fromFuture(() -> s3AsyncClient.createMultipartUpload(
-                        CreateMultipartUploadRequest.builder()
-                                .bucket(bucket)
-                                .key(key)
-                                .contentType(contentType)
-                                .build()
-                ));
+    public Mono<String> uploadStreamInParts(String key, Flux<DataBuffer> dataStream, long contentLength, String contentType, Long ownerId) {
+        return Mono.defer(() -> {
+            UploadPlanner.UploadPlan plan = uploadPlanner.plan(contentLength);
+            PartAssembler assembler = newAssembler(ownerId, plan);
+            Mono<Void> upload = plan.singleRequest()
+                    ? putObject(key, chunkDataBuffers(dataStream, assembler), contentType)
+                    : multipartUpload(key, chunkDataBuffers(dataStream, assembler), contentType, plan.limiter());
+            // CRC32C всего объекта посчитан при сборке частей, повторный проход по данным не нужен
+            return upload.then(Mono.fromSupplier(assembler::objectChecksum));
+        });
+    }
 
-        // Хранилище загруженных частей
-        Queue<CompletedPart> completedParts = new ConcurrentLinkedQueue<>();
+    private Mono<Void> multipartUpload(String key, Flux<UploadPart> partFlux, String contentType, AdaptiveConcurrencyLimiter limiter) {
+        String bucket = s3Configuration.getBucket();
 
-        return createUploadMono.flatMap(createResp -> {
-            String uploadId = createResp.uploadId();
+        // Хранилище загруженных частей: номер части -> ETag и контрольная сумма
+        Map<Integer, CompletedPart> completedParts = new ConcurrentHashMap<>();
 
-            // 2Разбиваем поток DataBuffer на байтовые блоки
-            Flux<PartChunk> partFlux = chunkDataBuffers(dataStream)
-                    .index()
-                    .map(tuple -> new PartChunk(tuple.getT1().intValue() + 1, tuple.getT2()));
+        // 1 Создание multipart upload; каждая часть передается с CRC32C, S3 сверяет ее при приеме
+        return createMultipartUpload(key, contentType, ChecksumAlgorithm.CRC32_C).flatMap(uploadId -> {
 
             // Отправляем части в S3
-            return partFlux.flatMap(partChunk -> {
+            return partFlux.flatMap(part -> {
                         UploadPartRequest uploadRequest = UploadPartRequest.builder()
                                 .bucket(bucket)
                                 .key(key)
                                 .uploadId(uploadId)
-                                .partNumber(partChunk.partNumber())
+                                .partNumber(part.partNumber())
+                                .contentLength(part.size())
+                                .checksumCRC32C(part.checksum())
                                 .build();
+                        recordChecksum(part);
 
+                        long startedAt = System.nanoTime();
                         return Mono.fromFuture(() ->
-                                s3AsyncClient.uploadPart(uploadRequest, AsyncRequestBody.fromBytes(partChunk.data()))
+                                s3AsyncClient.uploadPart(uploadRequest, part.toRequestBody())
                         ).map(uploadResp -> {
-                            completedParts.add(CompletedPart.builder()
-                                    .partNumber(partChunk.partNumber())
+                            completedParts.put(part.partNumber(), CompletedPart.builder()
+                                    .partNumber(part.partNumber())
                                     .eTag(uploadResp.eTag())
+                                    .checksumCRC32C(uploadRequest.checksumCRC32C())
                                     .build());
+                            // Замер пропускной способности для подстройки параллельности
+                            limiter.onPartCompleted(part.size(), System.nanoTime() - startedAt);
                             return uploadResp;
+                        }).doOnError(e -> limiter.release()).doFinally(signal -> {
+                            // При отмене SDK еще может читать буферы — в пул их не возвращаем
+                            if (signal == SignalType.CANCEL) part.discard();
+                            else part.release();
                         });
-                    }, 10) // ограничение параллельности
+                    }, limiter.maxLimit()) // фактическую параллельность ограничивает limiter
+                    // Части, которые не успели уйти в S3 (ошибка/отмена), возвращаем в пул
+                    .doOnDiscard(UploadPart.class, UploadPart::release)
                     .publishOn(Schedulers.parallel()) // ускоряем операции по сети
                     // Завершение загрузки
-                    .then(Mono.fromFuture(() ->
-                            s3AsyncClient.completeMultipartUpload(
-                                    CompleteMultipartUploadRequest.builder()
-                                            .bucket(bucket)
-                                            .key(key)
-                                            .uploadId(uploadId)
-                                            .multipartUpload(CompletedMultipartUpload.builder()
-                                                    .parts(completedParts.stream()
-                                                            .sorted(Comparator.comparingInt(CompletedPart::partNumber))
-                                                            .toList())
-                                                    .build())
-                                            .build()
-                            )
-                    ))
+                    .then(Mono.defer(() -> completeMultipartUpload(key, uploadId, completedParts.values())))
                     // При ошибке — прерывание multipart upload
                     .onErrorResume(ex -> {
                         // Сначала прерываем загрузку
-                        return Mono.fromFuture(() ->
-                                        s3AsyncClient.abortMultipartUpload(
-                                                AbortMultipartUploadRequest.builder()
-                                                        .bucket(bucket)
-                                                        .key(key)
-                                                        .uploadId(uploadId)
-                                                        .build()
-                                        )
-                                )
-                                .doOnSuccess(r -> log.warn("Multipart upload aborted for key: {}", key))
+                        return abortMultipartUpload(key, uploadId)
                                 .then(Mono.error(new S3UploadException("S3 multipart upload failed", ex)));
+                    });
+        });
+    }
+
+    @Override
+    public Mono<String> createMultipartUpload(String key, String contentType) {
+        // Части сессий приходят от клиента без контрольных сумм (в том числе мимо сервиса), алгоритм не задаем
+        return createMultipartUpload(key, contentType, null);
+    }
+
+    private Mono<String> createMultipartUpload(String key, String contentType, ChecksumAlgorithm checksumAlgorithm) {
+        return Mono.fromFuture(() -> s3AsyncClient.createMultipartUpload(
+                CreateMultipartUploadRequest.builder()
+                        .bucket(s3Configuration.getBucket())
+                        .key(key)
+                        .contentType(contentType)
+                        .checksumAlgorithm(checksumAlgorithm)
+                        .build()
+        )).map(CreateMultipartUploadResponse::uploadId);
+    }
+
+    @Override
+    public Mono<String> uploadPart(String key, String uploadId, int partNumber, Flux<DataBuffer> dataStream,
+                                   long contentLength, Long ownerId) {
+        return Flux.defer(() -> chunkDataBuffers(dataStream, newAssembler(ownerId, uploadPlanner.planSingle(contentLength))))
+                // Больше одной части — тело длиннее заявленного Content-Length
+                .single()
+                .flatMap(part -> {
+                    if (part.size() != contentLength) {
+                        part.release();
+                        return Mono.error(new IllegalStateException("Part body is shorter than Content-Length"));
+                    }
+                    return Mono.fromFuture(() ->
+                            s3AsyncClient.uploadPart(
+                                    UploadPartRequest.builder()
+                                            .bucket(s3Configuration.getBucket())
+                                            .key(key)
+                                            .uploadId(uploadId)
+                                            .partNumber(partNumber)
+                                            .contentLength(part.size())
+                                            .build(),
+                                    part.toRequestBody()
+                            )
+                    ).map(UploadPartResponse::eTag).doFinally(signal -> {
+                        if (signal == SignalType.CANCEL) part.discard();
+                        else part.release();
+                    });
+                })
+                .doOnDiscard(UploadPart.class, UploadPart::release)
+                .onErrorMap(ex -> new S3UploadException("S3 upload part failed", ex));
+    }
+
+    @Override
+    public Mono<Void> completeMultipartUpload(String key, String uploadId, Map<Integer, String> partETags) {
+        return completeMultipartUpload(key, uploadId, partETags.entrySet().stream()
+                .map(entry -> CompletedPart.builder()
+                        .partNumber(entry.getKey())
+                        .eTag(entry.getValue())
+                        .build())
+                .toList());
+    }
+
+    private Mono<Void> completeMultipartUpload(String key, String uploadId, Collection<CompletedPart> completedParts) {
+        List<CompletedPart> parts = completedParts.stream()
+                .sorted(Comparator.comparingInt(CompletedPart::partNumber))
+                .toList();
+
+        return Mono.fromFuture(() ->
+                s3AsyncClient.completeMultipartUpload(
+                        CompleteMultipartUploadRequest.builder()
+                                .bucket(s3Configuration.getBucket())
+                                .key(key)
+                                .uploadId(uploadId)
+                                .multipartUpload(CompletedMultipartUpload.builder()
+                                        .parts(parts)
+                                        .build())
+                                .build()
+                )
+        ).then();
+    }
+
+    @Override
+    public Mono<Void> abortMultipartUpload(String key, String uploadId) {
+        return Mono.fromFuture(() ->
+                        s3AsyncClient.abortMultipartUpload(
+                                AbortMultipartUploadRequest.builder()
+                                        .bucket(s3Configuration.getBucket())
+                                        .key(key)
+                                        .uploadId(uploadId)
+                                        .build()
+                        )
+                )
+                .doOnSuccess(r -> log.warn("Multipart upload aborted for key: {}", key))
+                .then();
+    }
+
+    @Override
+    public Flux<StoredPart> listParts(String key, String uploadId) {
+        return Flux.from(s3AsyncClient.listPartsPaginator(
+                        ListPartsRequest.builder()
+                                .bucket(s3Configuration.getBucket())
+                                .key(key)
+                                .uploadId(uploadId)
+                                .build()
+                ).parts())
+                .map(part -> new StoredPart(part.partNumber(), part.eTag(), part.size()));
+    }
+
+    @Override
+    public Flux<ByteBuffer> downloadRangeParallel(String key, long start, long end) {
+        return Flux.defer(() -> {
+            long chunkSize = downloadProperties.getChunkSize();
+            int concurrency = Math.max(1, downloadProperties.getConcurrency());
+            int readAhead = Math.max(concurrency, downloadProperties.getReadAhead());
+            // Число одновременных GET — отдельно от окна: готовые диапазоны ждут клиента, не занимая соединений
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(concurrency, concurrency, concurrency);
+
+            return Flux.<long[], Long>generate(() -> start, (offset, sink) -> {
+                        if (offset > end) {
+                            sink.complete();
+                            return offset;
+                        }
+                        long chunkEnd = Math.min(end, offset + chunkSize - 1);
+                        sink.next(new long[]{offset, chunkEnd});
+                        return chunkEnd + 1;
                     })
-                    .then();
+                    // flatMapSequential отдает диапазоны строго по порядку; в работе и в буфере не больше readAhead диапазонов
+                    .flatMapSequential(range -> limiter.acquire()
+                            .then(Mono.fromFuture(() -> s3AsyncClient.getObject(
+                                    GetObjectRequest.builder()
+                                            .bucket(s3Configuration.getBucket())
+                                            .key(key)
+                                            .range("bytes=" + range[0] + "-" + range[1])
+                                            .build(),
+                                    AsyncResponseTransformer.toBytes()))
+                                    // Слот освобождается, только если был получен
+                                    .doFinally(signal -> limiter.release()))
+                            .map(ResponseBytes::asByteBuffer), readAhead, 1);
         });
     }
 
-    // Вспомогательная структура для части
-    private record PartChunk(int partNumber, byte[] data) {}
+    @Override
+    public Flux<ByteBuffer> downloadRange(String key, long start, long end) {
+        return Mono.fromFuture(() -> s3AsyncClient.getObject(
+                        GetObjectRequest.builder()
+                                .bucket(s3Configuration.getBucket())
+                                .key(key)
+                                .range("bytes=" + start + "-" + end)
+                                .build(),
+                        AsyncResponseTransformer.toPublisher()))
+                // Байты читаются из сокета S3 только по запросу подписчика
+                .flatMapMany(Flux::from);
+    }
 
-    //  Реактивная агрегация DataBuffer в блоки заданного размера
-    private Flux<byte[]> chunkDataBuffers(Flux<DataBuffer> source) {
+    @Override
+    public Mono<Map<String, String>> deleteObjects(Collection<String> keys) {
+        return Flux.fromIterable(new LinkedHashSet<>(keys))
+                .buffer(MAX_DELETE_BATCH)
+                .flatMap(this::deleteBatch, DELETE_CONCURRENCY)
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    // Quiet-режим: в ответе только ошибки по отдельным ключам
+    private Flux<Map.Entry<String, String>> deleteBatch(List<String> keys) {
+        DeleteObjectsRequest request = DeleteObjectsRequest.builder()
+                .bucket(s3Configuration.getBucket())
+                .delete(Delete.builder()
+                        .objects(keys.stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList())
+                        .quiet(true)
+                        .build())
+                .build();
+        return Mono.fromFuture(() -> s3AsyncClient.deleteObjects(request))
+                .flatMapIterable(DeleteObjectsResponse::errors)
+                .map(error -> Map.entry(error.key(), error.code() + ": " + error.message()))
+                // Запрос не прошел целиком — неудаленными считаются все ключи пачки
+                .onErrorResume(e -> {
+                    log.warn("DeleteObjects for {} keys failed: {}", keys.size(), e.getMessage());
+                    return Flux.fromIterable(keys).map(key -> Map.entry(key, String.valueOf(e.getMessage())));
+                });
+    }
+
+    //  Небольшой файл: один PutObject вместо create/upload/complete multipart upload
+    private Mono<Void> putObject(String key, Flux<UploadPart> partFlux, String contentType) {
+        return partFlux
+                // Больше одной части — тело длиннее заявленного Content-Length
+                .singleOrEmpty()
+                .doOnNext(this::recordChecksum)
+                .flatMap(part -> sendPutObject(key, contentType, part.size(), part.checksum(), part.toRequestBody())
+                        .doFinally(signal -> {
+                            if (signal == SignalType.CANCEL) part.discard();
+                            else part.release();
+                        }))
+                // Пустой файл: сборщик не выдает ни одной части, объект создается с пустым телом
+                .switchIfEmpty(Mono.defer(() ->
+                        sendPutObject(key, contentType, 0, Checksums.toBase64(0L), AsyncRequestBody.empty())))
+                .doOnDiscard(UploadPart.class, UploadPart::release)
+                .onErrorMap(ex -> new S3UploadException("S3 put object failed", ex))
+                .then();
+    }
+
+    private Mono<PutObjectResponse> sendPutObject(String key, String contentType, long size, String checksum, AsyncRequestBody body) {
+        return Mono.fromFuture(() ->
+                s3AsyncClient.putObject(
+                        PutObjectRequest.builder()
+                                .bucket(s3Configuration.getBucket())
+                                .key(key)
+                                .contentType(contentType)
+                                .contentLength(size)
+                                .checksumCRC32C(checksum)
+                                .build(),
+                        body
+                )
+        );
+    }
+
+    // Сколько времени уходит на контрольные суммы: throughput = storage.upload.checksum.bytes / storage.upload.checksum
+    private void recordChecksum(UploadPart part) {
+        meterRegistry.timer("storage.upload.checksum").record(part.checksumNanos(), TimeUnit.NANOSECONDS);
+        meterRegistry.counter("storage.upload.checksum.bytes").increment(part.size());
+    }
+
+    private PartAssembler newAssembler(Long ownerId, UploadPlanner.UploadPlan plan) {
+        return new PartAssembler(partBufferPool, uploadPartScheduler, plan.limiter(), ownerId, plan.partSize());
+    }
+
+    //  Реактивная сборка DataBuffer в части размера plan.partSize(): каждый байт копируется один раз — в буфер пула.
+    //  Следующий DataBuffer запрашивается только после того, как под него выдан бюджет планировщика.
+    //  Сборщик хранит состояние одной загрузки, поэтому создается на каждую подписку
+    private Flux<UploadPart> chunkDataBuffers(Flux<DataBuffer> source, PartAssembler assembler) {
         return source
                 .publishOn(Schedulers.boundedElastic())
-                .flatMapSequential(buffer -> {
-                    byte[] bytes = new byte[buffer.readableByteCount()];
-                    buffer.read(bytes);
-                    DataBufferUtils.release(buffer);
-                    return Flux.just(bytes);
-                })
-                .bufferUntil(accumulateOver())
-                .map(this::mergeBuffers);
-    }
-
-    //  Функция, чтобы разбивать поток, когда накопленный размер >= chunkSize
-    private java.util.function.Predicate<byte[]> accumulateOver() {
-        AtomicLong counter = new AtomicLong();
-        return bytes -> {
-            long current = counter.addAndGet(bytes.length);
-            if (current >= S3AsyncServiceImpl.PART_SIZE) {
-                counter.set(0);
-                return true;
-            }
-            return false;
-        };
-    }
-
-    //  Объединение нескольких байтовых массивов в один
-    private byte[] mergeBuffers(List<byte[]> buffers) {
-        int total = buffers.stream().mapToInt(b -> b.length).sum();
-        byte[] combined = new byte[total];
-        int pos = 0;
-        for (byte[] b : buffers) {
-            System.arraycopy(b, 0, combined, pos, b.length);
-            pos += b.length;
-        }
-        return combined;
-    }
-}
\ No newline at end of file
+                .concatMap(buffer -> assembler.append(buffer)
+                        .doFinally(signal -> DataBufferUtils.release(buffer)), 1)
+                .concatWith(Mono.fromSupplier(assembler::finish))
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release)
+                .doOnDiscard(UploadPartScheduler.PartPermit.class, UploadPartScheduler.PartPermit::release)
+                .doFinally(signal -> assembler.releasePending());
+    }
+}
@@ -1,11 +1,21 @@
 package cloud.storage.fileservice.services.S3Services;
 
 import java.io.InputStream;
+import java.time.Duration;
 
 public interface S3Service {
     InputStream downloadFile(String key);
 
     void deleteFile(String key);
 
+    // Небольшой объект целиком из памяти (производные объекты: миниатюры)
+    void uploadBytes(String key, byte[] content, String contentType);
+
     void copyFile(String key, String destinationKey);
+
+    // Диапазон байт [start, end] объекта (включительно)
+    InputStream downloadRange(String key, long start, long end);
+
+    String presignUploadPart(String key, String uploadId, int partNumber, Duration ttl);
+    String presignDownload(String key, String contentDisposition, String contentType, Duration ttl);
 }
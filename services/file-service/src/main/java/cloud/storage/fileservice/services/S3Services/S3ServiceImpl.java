@@ -9,8 +9,11 @@ import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 import java.io.InputStream;
+import java.time.Duration;
 
 @Service
 @RequiredArgsConstructor
@@ -18,6 +21,7 @@ public class S3ServiceImpl implements S3Service{
 
     private final S3Configuration s3Configuration;
     private final S3Client s3Client;
+    private final S3Presigner s3Presigner;
 
     @Override
     public void deleteFile(String key) {
@@ -28,6 +32,17 @@ public class S3ServiceImpl implements S3Service{
         s3Client.deleteObject(deleteObjectRequest);
     }
 
+    @Override
+    public void uploadBytes(String key, byte[] content, String contentType) {
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                .bucket(s3Configuration.getBucket())
+                .key(key)
+                .contentType(contentType)
+                .contentLength((long) content.length)
+                .build();
+        s3Client.putObject(putObjectRequest, RequestBody.fromBytes(content));
+    }
+
     @Override
     public void copyFile(String key, String destinationKey) {
         CopyObjectRequest copyObjectRequest = CopyObjectRequest.builder()
@@ -39,6 +54,37 @@ public class S3ServiceImpl implements S3Service{
         s3Client.copyObject(copyObjectRequest);
     }
 
+    @Override
+    public String presignUploadPart(String key, String uploadId, int partNumber, Duration ttl) {
+        UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
+                .bucket(s3Configuration.getBucket())
+                .key(key)
+                .uploadId(uploadId)
+                .partNumber(partNumber)
+                .build();
+        return s3Presigner.presignUploadPart(presign -> presign
+                        .signatureDuration(ttl)
+                        .uploadPartRequest(uploadPartRequest))
+                .url()
+                .toString();
+    }
+
+    // Заголовки ответа S3 задаются параметрами response-content-disposition / response-content-type подписанной ссылки
+    @Override
+    public String presignDownload(String key, String contentDisposition, String contentType, Duration ttl) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(s3Configuration.getBucket())
+                .key(key)
+                .responseContentDisposition(contentDisposition)
+                .responseContentType(contentType)
+                .build();
+        return s3Presigner.presignGetObject(presign -> presign
+                        .signatureDuration(ttl)
+                        .getObjectRequest(getObjectRequest))
+                .url()
+                .toString();
+    }
+
     @Override
     public InputStream downloadFile(String key) {
         GetObjectRequest getObjectRequest = GetObjectRequest.builder()
@@ -47,4 +93,14 @@ public class S3ServiceImpl implements S3Service{
                 .build();
         return s3Client.getObject(getObjectRequest); // возвращает ResponseInputStream<GetObjectResponse>
     }
+
+    @Override
+    public InputStream downloadRange(String key, long start, long end) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                .bucket(s3Configuration.getBucket())
+                .key(key)
+                .range("bytes=" + start + "-" + end) // S3 отдает только запрошенные байты
+                .build();
+        return s3Client.getObject(getObjectRequest);
+    }
 }
@@ -0,0 +1,4 @@
+package cloud.storage.fileservice.services.S3Services;
+
+// Часть multipart upload, уже принятая S3
+public record StoredPart(int partNumber, String eTag, long size) {}
@@ -0,0 +1,108 @@
+package cloud.storage.fileservice.services.S3Services;
+
+import cloud.storage.fileservice.services.S3Services.UploadPartScheduler.PartPermit;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32C;
+
+/**
+ * Часть multipart upload, собранная из буферов пула.
+ * Данные копируются в буферы один раз и отдаются SDK без промежуточных массивов.
+ * Удерживает разрешение планировщика, пока часть не отправлена.
+ * CRC32C части и всего объекта считается при копировании, пока данные еще в кэше процессора.
+ */
+final class UploadPart {
+
+    private final int partNumber;
+    private final long capacity;
+    private final PartBufferPool pool;
+    private final PartPermit permit;
+    private final CRC32C objectChecksum;
+    private final CRC32C checksum = new CRC32C();
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private long size;
+    private long checksumNanos;
+
+    UploadPart(int partNumber, long capacity, PartBufferPool pool, PartPermit permit, CRC32C objectChecksum) {
+        this.partNumber = partNumber;
+        this.capacity = capacity;
+        this.pool = pool;
+        this.permit = permit;
+        this.objectChecksum = objectChecksum;
+    }
+
+    int partNumber() {
+        return partNumber;
+    }
+
+    long size() {
+        return size;
+    }
+
+    // CRC32C части в формате заголовка x-amz-checksum-crc32c
+    String checksum() {
+        return Checksums.toBase64(checksum.getValue());
+    }
+
+    // Время, потраченное на подсчет контрольных сумм части
+    long checksumNanos() {
+        return checksumNanos;
+    }
+
+    boolean isFull() {
+        return size >= capacity;
+    }
+
+    // Копирует из src столько байт, сколько помещается в часть
+    void write(ByteBuffer src) {
+        while (src.hasRemaining() && size < capacity) {
+            ByteBuffer slab = slabs.isEmpty() ? null : slabs.get(slabs.size() - 1);
+            if (slab == null || !slab.hasRemaining()) {
+                slab = pool.acquire();
+                slabs.add(slab);
+            }
+            int length = (int) Math.min(Math.min(src.remaining(), slab.remaining()), capacity - size);
+            slab.put(slab.position(), src, src.position(), length);
+            updateChecksums(slab.slice(slab.position(), length));
+            slab.position(slab.position() + length);
+            src.position(src.position() + length);
+            size += length;
+        }
+    }
+
+    private void updateChecksums(ByteBuffer written) {
+        long startedAt = System.nanoTime();
+        checksum.update(written.duplicate());
+        // Части пишутся строго по порядку, поэтому общая сумма совпадает с CRC32C всего объекта
+        objectChecksum.update(written);
+        checksumNanos += System.nanoTime() - startedAt;
+    }
+
+    AsyncRequestBody toRequestBody() {
+        ByteBuffer[] buffers = new ByteBuffer[slabs.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = slabs.get(i).duplicate().flip();
+        }
+        return AsyncRequestBody.fromByteBuffersUnsafe(buffers);
+    }
+
+    void release() {
+        if (released.compareAndSet(false, true)) {
+            slabs.forEach(pool::release);
+            permit.release();
+        }
+    }
+
+    void discard() {
+        if (released.compareAndSet(false, true)) {
+            slabs.forEach(pool::discard);
+            permit.release();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package cloud.storage.fileservice.services.S3Services;
+
+import cloud.storage.fileservice.configuration.UploadProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Общий на процесс планировщик частей загрузки с бюджетом памяти.
+ * Перед сборкой очередной части загрузка получает разрешение на partSize байт; если бюджет исчерпан,
+ * запрос встает в очередь своего пользователя, а очереди обслуживаются по кругу (round-robin),
+ * чтобы один пользователь с десятком загрузок не вытеснял остальных.
+ * Пока разрешение не выдано, чтение входного потока приостанавливается (backpressure).
+ */
+@Component
+public class UploadPartScheduler {
+
+    private final long budgetBytes;
+    private final Timer waitTimer;
+
+    // Очереди ожидающих по пользователям и порядок их обхода
+    private final Map<Long, Deque<Waiter>> queues = new HashMap<>();
+    private final Deque<Long> owners = new ArrayDeque<>();
+
+    private long inFlightBytes;
+    private int queueDepth;
+
+    public UploadPartScheduler(UploadProperties uploadProperties, MeterRegistry meterRegistry) {
+        this.budgetBytes = uploadProperties.getMemoryBudget();
+
+        Gauge.builder("storage.upload.scheduler.in-flight.bytes", this, UploadPartScheduler::getInFlightBytes)
+                .description("Байты, зарезервированные собираемыми и отправляемыми частями")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("storage.upload.scheduler.budget.bytes", () -> budgetBytes)
+                .description("Общий бюджет памяти на части загрузок")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("storage.upload.scheduler.queue.depth", this, UploadPartScheduler::getQueueDepth)
+                .description("Части, ожидающие свободного бюджета")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("storage.upload.scheduler.wait")
+                .description("Время ожидания разрешения на часть")
+                .register(meterRegistry);
+    }
+
+    public Mono<PartPermit> acquire(Long ownerId, long bytes) {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(ownerId, bytes, sink, System.nanoTime());
+            boolean granted;
+            synchronized (this) {
+                granted = queueDepth == 0 && fits(bytes);
+                if (granted) {
+                    inFlightBytes += bytes;
+                } else {
+                    queues.computeIfAbsent(ownerId, id -> {
+                        owners.addLast(id);
+                        return new ArrayDeque<>();
+                    }).addLast(waiter);
+                    queueDepth++;
+                }
+            }
+            if (granted) {
+                grant(waiter);
+                return;
+            }
+            sink.onCancel(() -> cancel(waiter));
+        });
+    }
+
+    public synchronized long getInFlightBytes() {
+        return inFlightBytes;
+    }
+
+    public synchronized int getQueueDepth() {
+        return queueDepth;
+    }
+
+    private void release(long bytes) {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            inFlightBytes -= bytes;
+            // Обходим пользователей по кругу, пока следующему ожидающему хватает бюджета
+            while (!owners.isEmpty()) {
+                Long ownerId = owners.pollFirst();
+                Deque<Waiter> queue = queues.get(ownerId);
+                Waiter next = queue.peekFirst();
+                if (!fits(next.bytes())) {
+                    owners.addFirst(ownerId);
+                    break;
+                }
+                queue.pollFirst();
+                queueDepth--;
+                inFlightBytes += next.bytes();
+                granted.add(next);
+                if (queue.isEmpty()) queues.remove(ownerId);
+                else owners.addLast(ownerId);
+            }
+        }
+        granted.forEach(this::grant);
+    }
+
+    private void cancel(Waiter waiter) {
+        synchronized (this) {
+            Deque<Waiter> queue = queues.get(waiter.ownerId());
+            if (queue == null || !queue.remove(waiter)) return;
+            queueDepth--;
+            if (queue.isEmpty()) {
+                queues.remove(waiter.ownerId());
+                owners.remove(waiter.ownerId());
+            }
+        }
+        // Освободившееся место в голове очереди могло разблокировать других
+        release(0);
+    }
+
+    // Часть больше всего бюджета пропускаем, только когда больше ничего не выполняется
+    private boolean fits(long bytes) {
+        return inFlightBytes + bytes <= budgetBytes || inFlightBytes == 0;
+    }
+
+    private void grant(Waiter waiter) {
+        waitTimer.record(System.nanoTime() - waiter.enqueuedAt(), TimeUnit.NANOSECONDS);
+        // Если подписчик уже отменился, MonoSink отбросит разрешение через discard-хук
+        waiter.sink().success(new PartPermit(waiter.bytes()));
+    }
+
+    private record Waiter(Long ownerId, long bytes, MonoSink<PartPermit> sink, long enqueuedAt) {}
+
+    /**
+     * Разрешение на partSize байт бюджета; освобождается один раз после отправки части
+     */
+    public final class PartPermit {
+        private final long bytes;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private PartPermit(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                UploadPartScheduler.this.release(bytes);
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package cloud.storage.fileservice.services.S3Services;
+
+import cloud.storage.fileservice.configuration.UploadProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Подбирает размер части и параметры параллельности под конкретную загрузку.
+ * Ограничения S3: не больше 10 000 частей, часть (кроме последней) от 5 MB до 5 GB.
+ */
+@Component
+@RequiredArgsConstructor
+public class UploadPlanner {
+
+    static final int MAX_PARTS = 10_000;
+    static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    static final long MAX_PART_SIZE = 5L * 1024 * 1024 * 1024;
+
+    private final UploadProperties uploadProperties;
+
+    UploadPlan plan(long contentLength) {
+        // Небольшой объект известного размера отправляем одним PutObject, одной "частью" на весь файл
+        if (contentLength > 0 && contentLength <= uploadProperties.getSinglePutThreshold()) {
+            return planSingle(contentLength);
+        }
+        return new UploadPlan(false, partSize(contentLength), new AdaptiveConcurrencyLimiter(
+                uploadProperties.getInitialConcurrency(),
+                2, // одна часть собирается, пока другая отправляется
+                uploadProperties.getMaxConcurrency()
+        ));
+    }
+
+    // Весь поток — одна часть заданного размера (PutObject или отдельная часть возобновляемой загрузки)
+    UploadPlan planSingle(long size) {
+        return new UploadPlan(true, size, new AdaptiveConcurrencyLimiter(1, 1, 1));
+    }
+
+    public long partSize(long contentLength) {
+        // Размер неизвестен (chunked) — берем размер по умолчанию
+        if (contentLength <= 0) return roundToSlab(clamp(uploadProperties.getPartSize()));
+
+        long target = ceilDiv(contentLength, Math.max(1, uploadProperties.getTargetPartCount()));
+        long size = Math.max(target, ceilDiv(contentLength, MAX_PARTS));
+        size = Math.max(size, uploadProperties.getMinPartSize());
+        return roundToSlab(clamp(size));
+    }
+
+    private long clamp(long size) {
+        return Math.min(Math.max(size, MIN_PART_SIZE), MAX_PART_SIZE);
+    }
+
+    // Часть из целого числа слэбов пула, чтобы последний слэб не простаивал
+    private long roundToSlab(long size) {
+        long slab = uploadProperties.getSlabSize();
+        return Math.min(ceilDiv(size, slab) * slab, MAX_PART_SIZE);
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+
+    record UploadPlan(boolean singleRequest, long partSize, AdaptiveConcurrencyLimiter limiter) {}
+}
@@ -0,0 +1,21 @@
+package cloud.storage.fileservice.services;
+
+import cloud.storage.fileservice.dto.requests.InitUploadSessionRequest;
+import cloud.storage.fileservice.dto.requests.UploadSessionPartRequest;
+import cloud.storage.fileservice.dto.responses.*;
+import cloud.storage.fileservice.models.User;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.List;
+
+public interface UploadSessionService {
+    InitUploadSessionResponse initSession(InitUploadSessionRequest request, Principal principal);
+    InitDirectUploadResponse initDirectSession(InitUploadSessionRequest request, Principal principal);
+    List<PresignedPartResponse> presignParts(String sessionId, int fromPart, int count, Principal principal);
+    UploadSessionPartResponse uploadPart(UploadSessionPartRequest request, Principal principal);
+    UploadSessionStatusResponse getSession(String sessionId, Principal principal);
+    UploadFileResponse completeSession(String sessionId, Principal principal);
+    void abortSession(String sessionId, Principal principal);
+    int abortSessionsInFolders(User user, Collection<Long> folderIds);
+}
@@ -0,0 +1,366 @@
+package cloud.storage.fileservice.services;
+
+import cloud.storage.fileservice.configuration.UploadProperties;
+import cloud.storage.fileservice.customExceptions.AccessDeniedException;
+import cloud.storage.fileservice.customExceptions.FileUploadException;
+import cloud.storage.fileservice.customExceptions.UploadSessionBusyException;
+import cloud.storage.fileservice.customExceptions.UploadSessionNotFoundException;
+import cloud.storage.fileservice.dto.requests.InitUploadSessionRequest;
+import cloud.storage.fileservice.dto.requests.UploadSessionPartRequest;
+import cloud.storage.fileservice.dto.responses.*;
+import cloud.storage.fileservice.models.*;
+import cloud.storage.fileservice.repository.FileRepository;
+import cloud.storage.fileservice.repository.UploadSessionPartRepository;
+import cloud.storage.fileservice.repository.UploadSessionRepository;
+import cloud.storage.fileservice.services.S3Services.S3AsyncService;
+import cloud.storage.fileservice.services.S3Services.S3Service;
+import cloud.storage.fileservice.services.bandwidth.BandwidthShaper;
+import cloud.storage.fileservice.services.bandwidth.BandwidthShaper.Direction;
+import cloud.storage.fileservice.services.S3Services.StoredPart;
+import cloud.storage.fileservice.services.S3Services.UploadPlanner;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.InputStream;
+import java.security.Principal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Возобновляемая загрузка: сессия хранит uploadId multipart upload в S3 и уже загруженные части,
+ * поэтому после обрыва связи клиент узнает, какие части есть, и догружает только недостающие (в том числе параллельно).
+ * В прямом режиме (direct) байты вообще не проходят через сервис: клиент загружает части в S3 по подписанным ссылкам,
+ * а сервис только сверяет принятые S3 части и завершает загрузку.
+ */
+@Service
+@RequiredArgsConstructor
+public class UploadSessionServiceImpl implements UploadSessionService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadSessionServiceImpl.class);
+
+    private static final int EXPIRED_BATCH_SIZE = 100;
+    private static final int MAX_PRESIGNED_PARTS = 1000; // ссылок за один запрос
+    // Срок захвата сессии: CompleteMultipartUpload крупного файла может идти минутами
+    private static final Duration CLAIM_TTL = Duration.ofMinutes(15);
+
+    private final HelperService helperService;
+    private final S3AsyncService s3AsyncService;
+    private final S3Service s3Service;
+    private final UploadPlanner uploadPlanner;
+    private final UploadProperties uploadProperties;
+    private final BandwidthShaper bandwidthShaper;
+
+    private final UploadSessionRepository uploadSessionRepository;
+    private final UploadSessionPartRepository uploadSessionPartRepository;
+    private final FileRepository fileRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    @Override
+    public InitUploadSessionResponse initSession(InitUploadSessionRequest request, Principal principal) {
+        UploadSession session = openSession(request, principal, false);
+        return new InitUploadSessionResponse(session.getId(), session.getPartSize(), session.getPartCount(), session.getExpiresAt());
+    }
+
+    @Override
+    public InitDirectUploadResponse initDirectSession(InitUploadSessionRequest request, Principal principal) {
+        UploadSession session = openSession(request, principal, true);
+        return new InitDirectUploadResponse(
+                session.getId(),
+                session.getPartSize(),
+                session.getPartCount(),
+                session.getExpiresAt(),
+                presign(session, 1, MAX_PRESIGNED_PARTS)
+        );
+    }
+
+    @Override
+    public List<PresignedPartResponse> presignParts(String sessionId, int fromPart, int count, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        UploadSession session = getOwnedSession(user, sessionId);
+        if (!session.isDirect())
+            throw new FileUploadException("Upload session is not in direct mode", null);
+        if (fromPart < 1 || fromPart > session.getPartCount())
+            throw new FileUploadException("Part number must be between 1 and " + session.getPartCount(), null);
+        uploadSessionRepository.touch(session.getId(), nextExpiry(true));
+        return presign(session, fromPart, Math.min(count, MAX_PRESIGNED_PARTS));
+    }
+
+    private UploadSession openSession(InitUploadSessionRequest request, Principal principal, boolean direct) {
+        String fileName = request.getFileName() != null ? request.getFileName().trim() : null;
+        helperService.validateStreamNotEmpty(fileName, request.getSize() != null ? request.getSize() : 0);
+        // Размер сессии задает план частей: без него complete заранее обречен
+        if (request.getSize() == null || request.getSize() <= 0)
+            throw new FileUploadException("File size must be positive", null);
+        User user = helperService.validateAndGetUser(principal);
+        Folder folder = helperService.validateAndGetFolder(user, request.getFolderId());
+        helperService.validateFileNameUniq(user, folder, fileName);
+        String s3Key = helperService.generateS3Key(fileName);
+        String contentType = request.getContentType() == null || MediaType.APPLICATION_OCTET_STREAM_VALUE.equals(request.getContentType())
+                ? helperService.detectMimeType(fileName)
+                : request.getContentType();
+
+        String uploadId = s3AsyncService.createMultipartUpload(s3Key, contentType).block();
+
+        try {
+            return uploadSessionRepository.save(UploadSession.builder()
+                    .id(UUID.randomUUID().toString())
+                    .fileName(fileName)
+                    .contentType(contentType)
+                    .totalSize(request.getSize())
+                    .partSize(uploadPlanner.partSize(request.getSize()))
+                    .s3Key(s3Key)
+                    .uploadId(uploadId)
+                    .direct(direct)
+                    .expiresAt(nextExpiry(direct))
+                    .user(user)
+                    .folder(folder)
+                    .build());
+        } catch (RuntimeException e) {
+            s3AsyncService.abortMultipartUpload(s3Key, uploadId).block();
+            throw e;
+        }
+    }
+
+    @Override
+    public UploadSessionPartResponse uploadPart(UploadSessionPartRequest request, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        UploadSession session = getOwnedSession(user, request.getSessionId());
+        if (session.isDirect())
+            throw new FileUploadException("Parts of a direct upload session are uploaded to storage via presigned URLs", null);
+
+        int partNumber = request.getPartNumber();
+        if (partNumber < 1 || partNumber > session.getPartCount())
+            throw new FileUploadException("Part number must be between 1 and " + session.getPartCount(), null);
+        long expectedSize = session.expectedPartSize(partNumber);
+        if (request.getContentLength() != expectedSize)
+            throw new FileUploadException("Part " + partNumber + " must be exactly " + expectedSize + " bytes", null);
+
+        // Повторная загрузка той же части просто заменяет ее в S3
+        InputStream body = bandwidthShaper.throttle(user.getId(), Direction.UPLOAD, request.getBody());
+        String eTag;
+        try {
+            eTag = s3AsyncService.uploadPart(session.getS3Key(), session.getUploadId(), partNumber,
+                    helperService.readStream(body), expectedSize, user.getId()).block();
+        } finally {
+            helperService.closeQuietly(body);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            UploadSessionPart part = uploadSessionPartRepository.findBySessionAndPartNumber(session, partNumber)
+                    .orElseGet(() -> UploadSessionPart.builder()
+                            .session(session)
+                            .partNumber(partNumber)
+                            .build());
+            part.setETag(eTag);
+            part.setSize(expectedSize);
+            uploadSessionPartRepository.save(part);
+            uploadSessionRepository.touch(session.getId(), nextExpiry(false));
+        });
+
+        return new UploadSessionPartResponse(partNumber, expectedSize);
+    }
+
+    @Override
+    public UploadSessionStatusResponse getSession(String sessionId, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        UploadSession session = getOwnedSession(user, sessionId);
+        touchDirect(session);
+        List<StoredPart> parts = storedParts(session);
+
+        // Смещение — сколько байт подряд с начала файла уже загружено
+        long offset = 0;
+        int expectedPart = 1;
+        for (StoredPart part : parts) {
+            if (part.partNumber() != expectedPart) break;
+            offset += part.size();
+            expectedPart++;
+        }
+
+        return new UploadSessionStatusResponse(
+                session.getId(),
+                session.getTotalSize(),
+                session.getPartSize(),
+                session.getPartCount(),
+                parts.stream().map(StoredPart::partNumber).toList(),
+                offset,
+                session.getExpiresAt()
+        );
+    }
+
+    @Override
+    public UploadFileResponse completeSession(String sessionId, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        UploadSession session = getOwnedSession(user, sessionId);
+        // Захват до CompleteMultipartUpload: повтор запроса после таймаута не создаст второй файл на тот же объект
+        claim(session);
+        try {
+            return complete(user, session);
+        } catch (RuntimeException e) {
+            uploadSessionRepository.release(session.getId());
+            throw e;
+        }
+    }
+
+    private UploadFileResponse complete(User user, UploadSession session) {
+        List<StoredPart> parts = storedParts(session);
+        if (parts.size() != session.getPartCount())
+            throw new FileUploadException("Uploaded " + parts.size() + " of " + session.getPartCount() + " parts", null);
+        // Размеры частей, загруженных мимо сервиса, проверяем по данным S3
+        if (session.isDirect()) {
+            for (StoredPart part : parts) {
+                long expectedSize = session.expectedPartSize(part.partNumber());
+                if (part.size() != expectedSize)
+                    throw new FileUploadException("Part " + part.partNumber() + " must be exactly " + expectedSize + " bytes", null);
+            }
+        }
+        helperService.validateFileNameUniq(user, session.getFolder(), session.getFileName());
+
+        Map<Integer, String> partETags = parts.stream()
+                .collect(Collectors.toMap(StoredPart::partNumber, StoredPart::eTag));
+        s3AsyncService.completeMultipartUpload(session.getS3Key(), session.getUploadId(), partETags).block();
+
+        File saved = transactionTemplate.execute(status -> {
+            File file = fileRepository.save(File.builder()
+                    .name(session.getFileName())
+                    .s3Key(session.getS3Key())
+                    .size(session.getTotalSize())
+                    .contentType(session.getContentType())
+                    .user(user)
+                    .folder(session.getFolder())
+                    .build());
+            deleteSession(session);
+            return file;
+        });
+
+        return new UploadFileResponse(true, saved.getId(), saved.getStatus());
+    }
+
+    @Override
+    public void abortSession(String sessionId, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        UploadSession session = getOwnedSession(user, sessionId);
+        claim(session);
+        abortAndDelete(session);
+    }
+
+    /**
+     * Прерывание незавершенных загрузок в удаляемые папки: иначе сессия держит ссылку на папку
+     */
+    @Override
+    public int abortSessionsInFolders(User user, Collection<Long> folderIds) {
+        List<UploadSession> sessions = uploadSessionRepository.findInFolders(user, folderIds);
+        int aborted = 0;
+        for (UploadSession session : sessions) {
+            // Сессию, которую сейчас завершают, не прерываем: ее объект станет обычным файлом
+            if (!tryClaim(session)) continue;
+            abortAndDelete(session);
+            aborted++;
+        }
+        return aborted;
+    }
+
+    /**
+     * Удаление брошенных сессий: прерываем multipart upload в S3, чтобы не платить за незавершенные части
+     */
+    @Scheduled(fixedDelayString = "${spring.storage.upload.session-cleanup-interval:PT10M}")
+    public void expireSessions() {
+        List<UploadSession> expired = uploadSessionRepository.findByExpiresAtBefore(
+                LocalDateTime.now(ZoneOffset.UTC), PageRequest.of(0, EXPIRED_BATCH_SIZE));
+        for (UploadSession session : expired) {
+            try {
+                if (!tryClaim(session)) continue;
+                abortAndDelete(session);
+                log.info("Upload session {} expired and removed", session.getId());
+            } catch (Exception e) {
+                log.error("Failed to expire upload session {}: {}", session.getId(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private UploadSession getOwnedSession(User user, String sessionId) {
+        UploadSession session = uploadSessionRepository.findSessionById(sessionId)
+                .filter(s -> s.getExpiresAt().isAfter(LocalDateTime.now(ZoneOffset.UTC)))
+                .orElseThrow(() -> new UploadSessionNotFoundException("Upload session not found or expired"));
+        if (!session.getUser().getId().equals(user.getId()))
+            throw new AccessDeniedException("Access denied to this upload session");
+        return session;
+    }
+
+    /**
+     * Загруженные части: для прямой загрузки — по данным S3 (ListParts), иначе — из таблицы частей сессии
+     */
+    private List<StoredPart> storedParts(UploadSession session) {
+        if (session.isDirect()) {
+            List<StoredPart> parts = s3AsyncService.listParts(session.getS3Key(), session.getUploadId())
+                    .collectSortedList(Comparator.comparingInt(StoredPart::partNumber))
+                    .block();
+            return parts != null ? parts : List.of();
+        }
+        return uploadSessionPartRepository.findBySessionOrderByPartNumber(session).stream()
+                .map(part -> new StoredPart(part.getPartNumber(), part.getETag(), part.getSize()))
+                .toList();
+    }
+
+    private List<PresignedPartResponse> presign(UploadSession session, int fromPart, int count) {
+        int lastPart = Math.min(session.getPartCount(), fromPart + Math.max(count, 1) - 1);
+        List<PresignedPartResponse> urls = new ArrayList<>(lastPart - fromPart + 1);
+        for (int partNumber = fromPart; partNumber <= lastPart; partNumber++) {
+            urls.add(new PresignedPartResponse(
+                    partNumber,
+                    session.expectedPartSize(partNumber),
+                    s3Service.presignUploadPart(session.getS3Key(), session.getUploadId(), partNumber, uploadProperties.getPresignTtl())
+            ));
+        }
+        return urls;
+    }
+
+    private void abortAndDelete(UploadSession session) {
+        try {
+            s3AsyncService.abortMultipartUpload(session.getS3Key(), session.getUploadId()).block();
+        } catch (Exception e) {
+            // Загрузка могла быть уже прервана или завершена — метаданные все равно удаляем
+            log.warn("Abort of multipart upload {} failed: {}", session.getUploadId(), e.getMessage());
+        }
+        transactionTemplate.executeWithoutResult(status -> deleteSession(session));
+    }
+
+    private void claim(UploadSession session) {
+        if (!tryClaim(session))
+            throw new UploadSessionBusyException("Upload session is already being completed or aborted");
+    }
+
+    private boolean tryClaim(UploadSession session) {
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        return uploadSessionRepository.claim(session.getId(), now, now.plus(CLAIM_TTL)) == 1;
+    }
+
+    private void deleteSession(UploadSession session) {
+        uploadSessionPartRepository.deleteBySession(session);
+        uploadSessionRepository.deleteById(session.getId());
+    }
+
+    // Ссылкой на часть можно пользоваться весь presignTtl, поэтому простой прямой сессии отсчитывается от ее истечения
+    private LocalDateTime nextExpiry(boolean direct) {
+        LocalDateTime expiry = LocalDateTime.now(ZoneOffset.UTC).plus(uploadProperties.getSessionTtl());
+        return direct ? expiry.plus(uploadProperties.getPresignTtl()) : expiry;
+    }
+
+    // Части прямой сессии идут мимо сервиса: активностью считаются обращения клиента к самой сессии
+    private void touchDirect(UploadSession session) {
+        if (session.isDirect()) uploadSessionRepository.touch(session.getId(), nextExpiry(true));
+    }
+}
@@ -0,0 +1,24 @@
+package cloud.storage.fileservice.services.bandwidth;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * /actuator/bandwidth — текущие скорости, доли и лимиты пользователей с открытыми передачами
+ */
+@Component
+@Endpoint(id = "bandwidth")
+@RequiredArgsConstructor
+public class BandwidthEndpoint {
+
+    private final BandwidthShaper bandwidthShaper;
+
+    @ReadOperation
+    public Map<BandwidthShaper.Direction, Map<Long, Map<String, Long>>> rates() {
+        return bandwidthShaper.currentRates();
+    }
+}
@@ -0,0 +1,219 @@
+package cloud.storage.fileservice.services.bandwidth;
+
+import cloud.storage.fileservice.configuration.BandwidthProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограничение скорости передачи по пользователям: у каждого пользователя свой token bucket на каждое направление.
+ * Общая полоса узла (globalRate) делится между активными пользователями max-min справедливо: раз в
+ * rebalanceInterval доли пересчитываются по фактическому потреблению, недоиспользованное отдается тем,
+ * кто упирается в свою долю. Так суммарная скорость остается высокой, а один пользователь не вытесняет остальных.
+ */
+@Service
+public class BandwidthShaper {
+
+    public enum Direction {
+        UPLOAD, DOWNLOAD
+    }
+
+    // Пользователь, выбирающий больше этой части своей доли, считается упершимся в нее
+    private static final double SATURATED = 0.9;
+
+    private final BandwidthProperties properties;
+    private final Map<Direction, Map<Long, UserShape>> shapes = new EnumMap<>(Direction.class);
+
+    public BandwidthShaper(BandwidthProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        for (Direction direction : Direction.values()) {
+            Map<Long, UserShape> users = new ConcurrentHashMap<>();
+            shapes.put(direction, users);
+            Gauge.builder("storage.bandwidth.rate", users, BandwidthShaper::totalRate)
+                    .description("Суммарная скорость передачи по активным пользователям")
+                    .tag("direction", direction.name().toLowerCase(Locale.ROOT))
+                    .baseUnit("bytes")
+                    .register(meterRegistry);
+            Gauge.builder("storage.bandwidth.users", users, Map::size)
+                    .tag("direction", direction.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Поток, чтение из которого идет со скоростью не выше полосы пользователя; лимит снимается при close()
+     */
+    public InputStream throttle(Long userId, Direction direction, InputStream in) {
+        if (!properties.isEnabled() || userId == null) return in;
+        return new ThrottledInputStream(in, open(userId, direction));
+    }
+
+    /**
+     * То же для реактивной передачи: следующий буфер отдается дальше после задержки, без блокировки потока
+     */
+    public Flux<ByteBuffer> throttle(Long userId, Direction direction, Flux<ByteBuffer> content) {
+        if (!properties.isEnabled() || userId == null) return content;
+        return Flux.using(
+                () -> open(userId, direction),
+                lease -> content.delayUntil(buffer -> {
+                    long wait = lease.reserve(buffer.remaining());
+                    return wait > 0 ? Mono.delay(Duration.ofNanos(wait)) : Mono.empty();
+                }),
+                Lease::close);
+    }
+
+    /**
+     * Текущие скорости (байт/с) и выделенные доли активных пользователей
+     */
+    public Map<Direction, Map<Long, Map<String, Long>>> currentRates() {
+        Map<Direction, Map<Long, Map<String, Long>>> rates = new EnumMap<>(Direction.class);
+        shapes.forEach((direction, users) -> {
+            Map<Long, Map<String, Long>> byUser = new TreeMap<>();
+            users.forEach((userId, shape) -> byUser.put(userId, Map.of(
+                    "rate", shape.measuredRate,
+                    "allocated", shape.bucket.rate(),
+                    "limit", shape.limit,
+                    "streams", (long) shape.streams.get())));
+            rates.put(direction, byUser);
+        });
+        return rates;
+    }
+
+    /**
+     * Пересчет долей общей полосы (water-filling): пользователь получает не больше, чем ему нужно и разрешено тарифом,
+     * остаток делится поровну между теми, кому нужно больше
+     */
+    @Scheduled(fixedDelayString = "${spring.storage.bandwidth.rebalance-interval:PT1S}")
+    public void rebalance() {
+        if (!properties.isEnabled()) return;
+        long now = System.nanoTime();
+        for (Map<Long, UserShape> users : shapes.values()) {
+            List<UserShape> active = new ArrayList<>();
+            users.forEach((userId, shape) -> {
+                shape.measure(now);
+                // Пользователь без открытых передач больше не участвует в дележе
+                // (одновременно открытая передача увидит удаление и заведет запись заново)
+                if (shape.streams.get() == 0) {
+                    users.remove(userId, shape);
+                    return;
+                }
+                active.add(shape);
+            });
+            allocate(active);
+        }
+    }
+
+    private void allocate(List<UserShape> active) {
+        if (active.isEmpty()) return;
+        long global = properties.getGlobalRate();
+        if (global <= 0) {
+            active.forEach(shape -> shape.bucket.setRate(shape.limit));
+            return;
+        }
+        // Потребность: упершимся в долю — их лимит, остальным — сколько они реально передают
+        active.sort(Comparator.comparingLong(UserShape::demand));
+        long remaining = global;
+        long[] allocation = new long[active.size()];
+        for (int i = 0; i < active.size(); i++) {
+            long share = remaining / (active.size() - i);
+            allocation[i] = Math.min(active.get(i).demand(), share);
+            remaining -= allocation[i];
+        }
+        // Неразобранное делится поровну: пользователь с растущей скоростью сможет ее набрать
+        long bonus = remaining / active.size();
+        for (int i = 0; i < active.size(); i++) {
+            UserShape shape = active.get(i);
+            shape.bucket.setRate(Math.max(1, Math.min(shape.limit, allocation[i] + bonus)));
+        }
+    }
+
+    private Lease open(Long userId, Direction direction) {
+        Map<Long, UserShape> users = shapes.get(direction);
+        while (true) {
+            UserShape shape = users.computeIfAbsent(userId, id -> new UserShape(limit(id), initialRate(id, users.size() + 1)));
+            shape.streams.incrementAndGet();
+            // Запись могла быть удалена rebalance-ом между computeIfAbsent и increment — тогда заводим новую
+            if (users.get(userId) == shape) return new Lease(shape);
+            shape.streams.decrementAndGet();
+        }
+    }
+
+    private long limit(Long userId) {
+        String tier = properties.getUserTiers().get(userId);
+        Long tierRate = tier != null ? properties.getTiers().get(tier) : null;
+        return tierRate != null ? tierRate : properties.getUserRate();
+    }
+
+    // Новый пользователь до ближайшего пересчета получает равную долю
+    private long initialRate(Long userId, int activeUsers) {
+        long global = properties.getGlobalRate();
+        long limit = limit(userId);
+        return global > 0 ? Math.max(1, Math.min(limit, global / activeUsers)) : limit;
+    }
+
+    private static double totalRate(Map<Long, UserShape> users) {
+        return users.values().stream().mapToLong(shape -> shape.measuredRate).sum();
+    }
+
+    private final class UserShape {
+        final long limit;
+        final TokenBucket bucket;
+        final AtomicInteger streams = new AtomicInteger();
+        final AtomicLong transferred = new AtomicLong();
+        volatile long measuredRate;
+        private long lastTransferred;
+        private long lastMeasured = System.nanoTime();
+
+        UserShape(long limit, long rate) {
+            this.limit = limit;
+            this.bucket = new TokenBucket(rate, properties.getBurst());
+        }
+
+        void measure(long now) {
+            long total = transferred.get();
+            long elapsed = Math.max(1, now - lastMeasured);
+            measuredRate = (total - lastTransferred) * TimeUnit.SECONDS.toNanos(1) / elapsed;
+            lastTransferred = total;
+            lastMeasured = now;
+        }
+
+        long demand() {
+            return measuredRate >= bucket.rate() * SATURATED ? limit : measuredRate;
+        }
+    }
+
+    /**
+     * Открытая передача пользователя: пока она жива, пользователь участвует в дележе полосы
+     */
+    public static final class Lease implements AutoCloseable {
+
+        private final UserShape shape;
+        private final AtomicInteger closed = new AtomicInteger();
+
+        private Lease(UserShape shape) {
+            this.shape = shape;
+        }
+
+        long reserve(long bytes) {
+            shape.transferred.addAndGet(bytes);
+            return shape.bucket.reserve(bytes);
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(0, 1)) shape.streams.decrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package cloud.storage.fileservice.services.bandwidth;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Поток, который читает прямо в буфер вызывающего и после чтения ждет, пока полоса пользователя это позволит
+ */
+final class ThrottledInputStream extends FilterInputStream {
+
+    private final BandwidthShaper.Lease lease;
+    private boolean closed;
+
+    ThrottledInputStream(InputStream in, BandwidthShaper.Lease lease) {
+        super(in);
+        this.lease = lease;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) pause(1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) pause(read);
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            lease.close();
+        }
+        super.close();
+    }
+
+    private void pause(int bytes) throws IOException {
+        long deadline = System.nanoTime() + lease.reserve(bytes);
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for bandwidth");
+            }
+        }
+    }
+}
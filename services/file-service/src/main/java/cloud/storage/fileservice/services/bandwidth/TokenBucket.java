@@ -0,0 +1,47 @@
+package cloud.storage.fileservice.services.bandwidth;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket с долгом: списание не дробится по размеру буфера, а уходит в минус,
+ * и вызывающий ждет, пока долг не погасится. Так чтение любым размером буфера обходится без лишних копий.
+ */
+final class TokenBucket {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final long burst;
+    private long rate; // байт/с
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(long rate, long burst) {
+        this.rate = rate;
+        this.burst = burst;
+        this.tokens = burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    synchronized void setRate(long rate) {
+        refill(System.nanoTime());
+        this.rate = rate;
+    }
+
+    synchronized long rate() {
+        return rate;
+    }
+
+    // Списывает bytes и возвращает, сколько наносекунд нужно подождать до их передачи
+    synchronized long reserve(long bytes) {
+        long now = System.nanoTime();
+        refill(now);
+        tokens -= bytes;
+        if (tokens >= 0) return 0;
+        return (long) (-tokens * NANOS_PER_SECOND / rate);
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (double) (now - lastRefill) * rate / NANOS_PER_SECOND);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,103 @@
+package cloud.storage.fileservice.services.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Заполнение кэша одним объектом: байты из S3 пишутся во временный файл независимо от клиентов,
+ * а все одновременные запросы этого объекта читают растущий файл вслед за записью.
+ */
+final class CacheFill {
+
+    private static final long WAIT_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+    private final Path tempFile;
+    private final long size;
+
+    private long written;
+    private boolean completed;
+    private Throwable failure;
+
+    CacheFill(Path tempFile, long size) {
+        this.tempFile = tempFile;
+        this.size = size;
+    }
+
+    Path tempFile() {
+        return tempFile;
+    }
+
+    long size() {
+        return size;
+    }
+
+    synchronized void advance(long bytes) {
+        written += bytes;
+        notifyAll();
+    }
+
+    synchronized void complete() {
+        completed = true;
+        notifyAll();
+    }
+
+    synchronized void fail(Throwable cause) {
+        failure = cause;
+        notifyAll();
+    }
+
+    // Ждет, пока в файле появятся байты после position; возвращает границу записанного
+    private synchronized long awaitData(long position) throws IOException {
+        long deadline = System.nanoTime() + WAIT_TIMEOUT_NANOS;
+        while (position >= written && !completed && failure == null) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) throw new IOException("Timed out waiting for cache fill");
+            try {
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for cache fill", e);
+            }
+        }
+        if (failure != null) throw new IOException("Cache fill failed", failure);
+        return written;
+    }
+
+    /**
+     * Поток диапазона [start, end]; файл открывается сразу, поэтому переименование по завершении заполнения ему не мешает
+     */
+    InputStream follow(long start, long end) throws IOException {
+        FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.READ);
+        return new InputStream() {
+            private long position = start;
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                if (position > end) return -1;
+                long available = Math.min(awaitData(position), end + 1);
+                int toRead = (int) Math.min(len, available - position);
+                int read = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+                if (read == -1) throw new IOException("Cache file is shorter than expected");
+                position += read;
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                channel.close();
+            }
+        };
+    }
+}
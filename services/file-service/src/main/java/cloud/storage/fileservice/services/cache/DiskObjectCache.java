@@ -0,0 +1,349 @@
+package cloud.storage.fileservice.services.cache;
+
+import cloud.storage.fileservice.configuration.DownloadProperties;
+import cloud.storage.fileservice.models.File;
+import cloud.storage.fileservice.services.S3Services.Checksums;
+import cloud.storage.fileservice.services.S3Services.S3AsyncService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Локальный дисковый кэш популярных объектов S3 для скачивания.
+ * Объекты неизменяемы, поэтому ключ — s3Key, а согласованность нужна только при удалении.
+ * Вытеснение — LRU с ограничением по суммарному объему; объекты больше maxObjectSize не кэшируются.
+ * Промах по полному скачиванию запускает одно заполнение из S3, которое читают все одновременные запросы.
+ */
+@Service
+public class DiskObjectCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DiskObjectCache.class);
+
+    private static final String TEMP_SUFFIX = ".fill";
+
+    private final DownloadProperties.Cache properties;
+    private final S3AsyncService s3AsyncService;
+    private final long parallelThreshold;
+
+    // Имя файла кэша (sha-256 от s3Key) -> размер; порядок доступа задает очередь вытеснения
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CacheFill> fills = new HashMap<>();
+    private long usedBytes; // готовые файлы + зарезервированное под идущие заполнения
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter bytesSaved;
+
+    public DiskObjectCache(DownloadProperties downloadProperties, S3AsyncService s3AsyncService, MeterRegistry meterRegistry) {
+        this.properties = downloadProperties.getCache();
+        this.s3AsyncService = s3AsyncService;
+        this.parallelThreshold = downloadProperties.getParallelThreshold();
+
+        this.hits = Counter.builder("storage.download.cache.hits")
+                .description("Скачивания, отданные из локального кэша (в том числе вслед за идущим заполнением)")
+                .register(meterRegistry);
+        this.misses = Counter.builder("storage.download.cache.misses")
+                .description("Скачивания, для которых объект пришлось читать из S3")
+                .register(meterRegistry);
+        this.bytesSaved = Counter.builder("storage.download.cache.bytes.saved")
+                .description("Байты, отданные из кэша без обращения к S3")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("storage.download.cache.hit.ratio", this, DiskObjectCache::hitRatio)
+                .register(meterRegistry);
+        Gauge.builder("storage.download.cache.size.bytes", this, DiskObjectCache::getUsedBytes)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("storage.download.cache.entries", this, DiskObjectCache::getEntryCount)
+                .register(meterRegistry);
+    }
+
+    // Восстановление индекса после рестарта: недописанные файлы удаляются, готовые — в порядке последнего изменения
+    @PostConstruct
+    void loadIndex() throws IOException {
+        if (!properties.isEnabled()) return;
+        Path dir = directory();
+        Files.createDirectories(dir);
+        List<Path> ready = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path path : (Iterable<Path>) files::iterator) {
+                if (path.getFileName().toString().endsWith(TEMP_SUFFIX)) Files.deleteIfExists(path);
+                else ready.add(path);
+            }
+        }
+        ready.sort(Comparator.comparing(this::lastModified));
+        List<Path> evicted;
+        synchronized (this) {
+            for (Path path : ready) {
+                long size = Files.size(path);
+                entries.put(path.getFileName().toString(), size);
+                usedBytes += size;
+            }
+            evicted = evict();
+        }
+        evicted.forEach(this::deleteQuietly);
+        log.info("Download cache loaded: {} objects, {} bytes", entries.size(), usedBytes);
+    }
+
+    /**
+     * Поток диапазона [start, end] из кэша; null — объект не кэшируется или это промах по части файла
+     * (тогда диапазон читается из S3 напрямую, без заполнения)
+     */
+    public InputStream openRange(File file, long start, long end) {
+        if (!cacheable(file)) return null;
+        String name = cacheName(file.getS3Key());
+        boolean fullObject = start == 0 && end == file.getSize() - 1;
+        List<Path> evicted = new ArrayList<>();
+        try {
+            CacheFill fill;
+            synchronized (this) {
+                Long size = entries.get(name);
+                if (size != null) {
+                    InputStream stream = new MappedFileInputStream(directory().resolve(name), start, end);
+                    recordHit(end - start + 1);
+                    return stream;
+                }
+                fill = fills.get(name);
+                if (fill == null) {
+                    if (!fullObject) return null;
+                    misses.increment();
+                    fill = startFill(file, name, evicted);
+                    // Первый клиент тоже читает вслед за заполнением: медленный клиент не задерживает загрузку из S3
+                    return fill.follow(start, end);
+                }
+            }
+            // Объект уже загружается для другого запроса — читаем тот же файл, второй раз в S3 не идем
+            InputStream stream = fill.follow(start, end);
+            recordHit(end - start + 1);
+            return stream;
+        } catch (IOException e) {
+            log.warn("Download cache unavailable for {}: {}", file.getS3Key(), e.getMessage());
+            return null;
+        } finally {
+            evicted.forEach(this::deleteQuietly);
+        }
+    }
+
+    /**
+     * Диапазон [start, end] готового объекта в виде отображенных в память сегментов; null — объекта в кэше нет
+     */
+    public Flux<ByteBuffer> streamRange(File file, long start, long end) {
+        if (!cacheable(file)) return null;
+        String name = cacheName(file.getS3Key());
+        Path path;
+        synchronized (this) {
+            if (entries.get(name) == null) return null;
+            path = directory().resolve(name);
+            recordHit(end - start + 1);
+        }
+        return Flux.using(
+                () -> FileChannel.open(path, StandardOpenOption.READ),
+                channel -> Flux.<ByteBuffer, Long>generate(() -> start, (position, sink) -> {
+                    if (position > end) {
+                        sink.complete();
+                        return position;
+                    }
+                    long length = Math.min(MappedFileInputStream.SEGMENT_SIZE, end - position + 1);
+                    try {
+                        sink.next(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+                    } catch (IOException e) {
+                        sink.error(e);
+                    }
+                    return position + length;
+                }),
+                channel -> {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    // Объект удален из S3 — удаляем и локальную копию. Идущее заполнение уже не опубликуется:
+    // подключенные к нему читатели дочитают файл, после чего он будет удален
+    public void invalidate(String s3Key) {
+        if (!properties.isEnabled()) return;
+        String name = cacheName(s3Key);
+        synchronized (this) {
+            CacheFill fill = fills.remove(name);
+            if (fill != null) usedBytes -= fill.size();
+            Long size = entries.remove(name);
+            if (size == null) return;
+            usedBytes -= size;
+        }
+        deleteQuietly(directory().resolve(name));
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    private double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    private boolean cacheable(File file) {
+        return properties.isEnabled() && file.getSize() > 0 && file.getSize() <= properties.getMaxObjectSize();
+    }
+
+    private void recordHit(long bytes) {
+        hits.increment();
+        bytesSaved.increment(bytes);
+    }
+
+    // Вызывается под монитором кэша; вытесненные файлы добавляются в evicted и удаляются вызывающим вне монитора.
+    // Имя временного файла уникально: новое заполнение не затрет файл отмененного, который еще читают
+    private CacheFill startFill(File file, String name, List<Path> evicted) throws IOException {
+        Path tempFile = directory().resolve(name + "." + UUID.randomUUID() + TEMP_SUFFIX);
+        FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        CacheFill fill = new CacheFill(tempFile, file.getSize());
+        fills.put(name, fill);
+        usedBytes += file.getSize();
+        evicted.addAll(evict());
+
+        long last = file.getSize() - 1;
+        Flux<ByteBuffer> content = file.getSize() >= parallelThreshold
+                ? s3AsyncService.downloadRangeParallel(file.getS3Key(), 0, last)
+                : s3AsyncService.downloadRange(file.getS3Key(), 0, last);
+        CRC32C checksum = new CRC32C();
+
+        content
+                // Запись на диск — блокирующая, уводим ее с потоков S3-клиента
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(buffer -> {
+                    checksum.update(buffer.duplicate());
+                    int length = buffer.remaining();
+                    try {
+                        while (buffer.hasRemaining()) channel.write(buffer);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    fill.advance(length);
+                })
+                .subscribe(
+                        null,
+                        e -> {
+                            log.warn("Download cache fill failed for {}: {}", file.getS3Key(), e.getMessage());
+                            closeQuietly(channel);
+                            abandon(name, fill);
+                            fill.fail(e);
+                        },
+                        () -> {
+                            closeQuietly(channel);
+                            String actual = Checksums.toBase64(checksum.getValue());
+                            if (file.getChecksumCrc32c() != null && !file.getChecksumCrc32c().equals(actual)) {
+                                IOException mismatch = new IOException("CRC32C mismatch while filling cache for " + file.getS3Key());
+                                abandon(name, fill);
+                                fill.fail(mismatch);
+                                return;
+                            }
+                            publish(name, fill);
+                            fill.complete();
+                        }
+                );
+        return fill;
+    }
+
+    // Готовый файл становится записью кэша; переименование атомарно, открытые читатели продолжают читать
+    private void publish(String name, CacheFill fill) {
+        try {
+            Files.move(fill.tempFile(), directory().resolve(name), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Failed to publish cache file {}: {}", name, e.getMessage());
+            abandon(name, fill);
+            return;
+        }
+        boolean published;
+        synchronized (this) {
+            published = fills.remove(name, fill);
+            if (published) entries.put(name, fill.size());
+        }
+        // Объект удалили, пока шло заполнение
+        if (!published) deleteQuietly(directory().resolve(name));
+    }
+
+    private void abandon(String name, CacheFill fill) {
+        synchronized (this) {
+            if (fills.remove(name, fill)) usedBytes -= fill.size();
+        }
+        deleteQuietly(fill.tempFile());
+    }
+
+    // Вызывается под монитором кэша; идущие заполнения не вытесняются, только готовые файлы.
+    // Файлы удаляет вызывающий вне монитора: уже открытые читатели дочитают их, после unlink данные живут до закрытия дескриптора
+    private List<Path> evict() {
+        List<Path> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (usedBytes > properties.getMaxBytes() && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            iterator.remove();
+            usedBytes -= eldest.getValue();
+            evicted.add(directory().resolve(eldest.getKey()));
+        }
+        return evicted;
+    }
+
+    private Path directory() {
+        return Path.of(properties.getDir());
+    }
+
+    private static String cacheName(String s3Key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(s3Key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private FileTime lastModified(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).lastModifiedTime();
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close cache file: {}", e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete cache file {}: {}", path, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package cloud.storage.fileservice.services.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Чтение диапазона файла кэша через отображение в память: данные берутся прямо из page cache,
+ * без системных вызовов read. Отображаются сегменты по мере чтения, а не весь файл сразу.
+ */
+final class MappedFileInputStream extends InputStream {
+
+    static final long SEGMENT_SIZE = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long end; // исключительно
+    private long position;
+    private MappedByteBuffer segment;
+
+    // Диапазон [start, end] включительно
+    MappedFileInputStream(Path path, long start, long end) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.position = start;
+        this.end = end + 1;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (position >= end) return -1;
+        if (segment == null || !segment.hasRemaining()) {
+            segment = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, end - position));
+        }
+        int read = Math.min(len, segment.remaining());
+        segment.get(b, off, read);
+        position += read;
+        return read;
+    }
+
+    @Override
+    public int available() {
+        return segment != null ? segment.remaining() : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        segment = null;
+        channel.close();
+    }
+}
@@ -0,0 +1,33 @@
+package cloud.storage.fileservice.services.compression;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Пул Deflater: каждый держит около 256 KB нативной памяти, которая освобождается только end(),
+ * поэтому экземпляры переиспользуются, а лишние сразу закрываются
+ */
+final class DeflaterPool {
+
+    private final BlockingQueue<Deflater> gzip;
+    private final BlockingQueue<Deflater> zlib;
+
+    DeflaterPool(int size) {
+        this.gzip = new ArrayBlockingQueue<>(Math.max(1, size));
+        this.zlib = new ArrayBlockingQueue<>(Math.max(1, size));
+    }
+
+    // nowrap — «сырой» deflate для gzip, иначе формат zlib (Content-Encoding: deflate)
+    Deflater borrow(int level, boolean nowrap) {
+        Deflater deflater = (nowrap ? gzip : zlib).poll();
+        if (deflater == null) return new Deflater(level, nowrap);
+        deflater.setLevel(level);
+        return deflater;
+    }
+
+    void release(Deflater deflater, boolean nowrap) {
+        deflater.reset();
+        if (!(nowrap ? gzip : zlib).offer(deflater)) deflater.end();
+    }
+}
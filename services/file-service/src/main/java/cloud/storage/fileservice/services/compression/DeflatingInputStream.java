@@ -0,0 +1,104 @@
+package cloud.storage.fileservice.services.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Сжатие по мере чтения: исходные байты читаются в один буфер ограниченного размера,
+ * а сжатые пишутся сразу в буфер вызывающего, без промежуточного выходного буфера
+ */
+final class DeflatingInputStream extends InputStream {
+
+    // Заголовок gzip (RFC 1952): deflate, без флагов и времени, ОС не указана
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final InputStream source;
+    private final DeflaterPool pool;
+    private final boolean gzip;
+    private final byte[] input;
+    private final CRC32 crc = new CRC32();
+
+    private Deflater deflater;
+    private byte[] prefix; // заголовок или трейлер gzip, еще не отданный вызывающему
+    private int prefixPosition;
+    private boolean trailerWritten;
+
+    DeflatingInputStream(InputStream source, DeflaterPool pool, int level, boolean gzip, int bufferSize) {
+        this.source = source;
+        this.pool = pool;
+        this.gzip = gzip;
+        this.input = new byte[bufferSize];
+        this.deflater = pool.borrow(level, gzip);
+        this.prefix = gzip ? GZIP_HEADER : null;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] single = new byte[1];
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (prefix != null) {
+            int n = Math.min(len, prefix.length - prefixPosition);
+            System.arraycopy(prefix, prefixPosition, b, off, n);
+            prefixPosition += n;
+            if (prefixPosition == prefix.length) {
+                prefix = null;
+                prefixPosition = 0;
+            }
+            return n;
+        }
+        if (deflater == null) return -1;
+
+        while (true) {
+            int n = deflater.deflate(b, off, len);
+            if (n > 0) return n;
+            if (deflater.finished()) {
+                long size = deflater.getBytesRead();
+                release();
+                if (gzip && !trailerWritten) {
+                    trailerWritten = true;
+                    prefix = trailer(crc.getValue(), size);
+                    return read(b, off, len);
+                }
+                return -1;
+            }
+            if (deflater.needsInput()) {
+                int read = source.read(input);
+                if (read == -1) {
+                    deflater.finish();
+                } else if (read > 0) {
+                    crc.update(input, 0, read);
+                    deflater.setInput(input, 0, read);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        release();
+        source.close();
+    }
+
+    private void release() {
+        if (deflater == null) return;
+        pool.release(deflater, gzip);
+        deflater = null;
+    }
+
+    // CRC32 и длина исходных данных по модулю 2^32, little-endian
+    private static byte[] trailer(long crc, long size) {
+        byte[] trailer = new byte[8];
+        for (int i = 0; i < 4; i++) {
+            trailer[i] = (byte) (crc >>> (8 * i));
+            trailer[4 + i] = (byte) (size >>> (8 * i));
+        }
+        return trailer;
+    }
+}
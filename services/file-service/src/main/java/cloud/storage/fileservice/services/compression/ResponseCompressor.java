@@ -0,0 +1,97 @@
+package cloud.storage.fileservice.services.compression;
+
+import cloud.storage.fileservice.configuration.DownloadProperties;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * Сжатие отдаваемых файлов по Accept-Encoding. Сжимаются только текстовые форматы: уже сжатые
+ * (картинки, видео, архивы) от повторного сжатия не уменьшаются. Уровень выбирается по размеру файла.
+ */
+@Service
+public class ResponseCompressor {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    private static final Set<String> COMPRESSIBLE_TYPES = Set.of(
+            "application/json", "application/xml", "application/javascript", "application/x-javascript",
+            "application/x-ndjson", "application/x-yaml", "application/yaml", "application/sql",
+            "application/x-sh", "application/rtf", "image/svg+xml", "image/bmp"
+    );
+    private static final List<String> COMPRESSIBLE_SUFFIXES = List.of("+json", "+xml");
+
+    private final DownloadProperties.Compression properties;
+    private final DeflaterPool pool;
+
+    public ResponseCompressor(DownloadProperties downloadProperties) {
+        this.properties = downloadProperties.getCompression();
+        this.pool = new DeflaterPool(properties.getPoolSize());
+    }
+
+    /**
+     * Кодировка для ответа с учетом q-значений Accept-Encoding; null — отдавать без сжатия
+     */
+    public String negotiate(String contentType, long size, String acceptEncoding) {
+        if (!properties.isEnabled() || acceptEncoding == null || size < properties.getMinSize() || !compressible(contentType)) {
+            return null;
+        }
+        double gzip = 0, deflate = 0, any = 0;
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.trim().split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            double q = quality(parts);
+            switch (coding) {
+                case GZIP, "x-gzip" -> gzip = Math.max(gzip, q);
+                case DEFLATE -> deflate = Math.max(deflate, q);
+                case "*" -> any = q;
+                default -> {
+                }
+            }
+        }
+        if (gzip == 0 && !acceptEncoding.toLowerCase(Locale.ROOT).contains(GZIP)) gzip = any;
+        if (gzip > 0 && gzip >= deflate) return GZIP;
+        return deflate > 0 ? DEFLATE : null;
+    }
+
+    /**
+     * Поток сжатых байтов; Deflater возвращается в пул, когда поток дочитан или закрыт
+     */
+    public InputStream compress(InputStream content, String encoding, long size) {
+        int level = size >= properties.getFastThreshold() ? Deflater.BEST_SPEED : properties.getLevel();
+        return new DeflatingInputStream(content, pool, level, GZIP.equals(encoding), properties.getBufferSize());
+    }
+
+    private boolean compressible(String contentType) {
+        MediaType type;
+        try {
+            type = MediaType.parseMediaType(contentType);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        if ("text".equals(type.getType())) return true;
+        String essence = (type.getType() + "/" + type.getSubtype()).toLowerCase(Locale.ROOT);
+        return COMPRESSIBLE_TYPES.contains(essence) || COMPRESSIBLE_SUFFIXES.stream().anyMatch(essence::endsWith);
+    }
+
+    // q=0 означает запрет кодировки; некорректное значение считаем 1
+    private double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 1;
+                }
+            }
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,134 @@
+package cloud.storage.fileservice.services.deletion;
+
+import cloud.storage.fileservice.configuration.DeletionProperties;
+import cloud.storage.fileservice.repository.ObjectDeletionRepository;
+import cloud.storage.fileservice.services.S3Services.S3AsyncService;
+import cloud.storage.fileservice.services.cache.DiskObjectCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Фоновое удаление объектов из очереди object_deletions через S3 DeleteObjects.
+ * Удаление идемпотентно: отсутствующий ключ S3 считает удаленным, поэтому повтор после сбоя
+ * (в том числе уже удаленного объекта) безопасен. Ошибки повторяются с экспоненциальной паузой.
+ */
+@Service
+public class ObjectDeletionDrainer {
+
+    private static final Logger log = LoggerFactory.getLogger(ObjectDeletionDrainer.class);
+
+    private static final int MAX_ERROR_LENGTH = 1024;
+
+    private final DeletionProperties properties;
+    private final ObjectDeletionRepository objectDeletionRepository;
+    private final S3AsyncService s3AsyncService;
+    private final DiskObjectCache diskObjectCache;
+
+    private final Counter deleted;
+    private final Counter failed;
+    private volatile long pending;
+    private volatile double lagSeconds;
+
+    public ObjectDeletionDrainer(DeletionProperties properties, ObjectDeletionRepository objectDeletionRepository,
+                                 S3AsyncService s3AsyncService, DiskObjectCache diskObjectCache,
+                                 MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.objectDeletionRepository = objectDeletionRepository;
+        this.s3AsyncService = s3AsyncService;
+        this.diskObjectCache = diskObjectCache;
+
+        this.deleted = Counter.builder("storage.deletion.deleted")
+                .description("Объекты, удаленные из S3 обработчиком очереди")
+                .register(meterRegistry);
+        this.failed = Counter.builder("storage.deletion.failed")
+                .description("Неудачные попытки удаления объектов (будут повторены)")
+                .register(meterRegistry);
+        Gauge.builder("storage.deletion.pending", this, drainer -> drainer.pending)
+                .description("Записей в очереди удаления")
+                .register(meterRegistry);
+        Gauge.builder("storage.deletion.lag", this, drainer -> drainer.lagSeconds)
+                .description("Возраст самой старой записи в очереди удаления")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${spring.storage.deletion.poll-interval:PT1S}")
+    public void drain() {
+        try {
+            // Полная пачка — вероятно, в очереди есть еще: разбираем, не дожидаясь следующего запуска
+            int claimed;
+            do {
+                claimed = drainBatch();
+            } while (claimed == properties.getBatchSize());
+        } catch (RuntimeException e) {
+            log.warn("Object deletion drain failed: {}", e.getMessage());
+        } finally {
+            measureBacklog();
+        }
+    }
+
+    private int drainBatch() {
+        LocalDateTime now = LocalDateTime.now(ZoneOffset.UTC);
+        List<Object[]> claimed = objectDeletionRepository.claim(now, now.plus(properties.getLease()), properties.getBatchSize());
+        if (claimed.isEmpty()) return 0;
+
+        Map<String, List<Long>> idsByKey = new HashMap<>();
+        Map<Long, Integer> attemptsById = new HashMap<>();
+        for (Object[] row : claimed) {
+            Long id = ((Number) row[0]).longValue();
+            idsByKey.computeIfAbsent((String) row[1], key -> new ArrayList<>()).add(id);
+            attemptsById.put(id, ((Number) row[2]).intValue());
+        }
+
+        Map<String, String> failedKeys = s3AsyncService.deleteObjects(idsByKey.keySet()).block();
+
+        List<Long> done = new ArrayList<>();
+        idsByKey.forEach((key, ids) -> {
+            String error = failedKeys.get(key);
+            if (error == null) {
+                done.addAll(ids);
+                diskObjectCache.invalidate(key);
+                return;
+            }
+            failed.increment();
+            for (Long id : ids) {
+                int attempts = attemptsById.get(id);
+                objectDeletionRepository.reschedule(id, LocalDateTime.now(ZoneOffset.UTC).plus(backoff(attempts)),
+                        error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+            }
+            log.warn("Failed to delete object {} (attempt {}): {}", key, attemptsById.get(ids.get(0)), error);
+        });
+        if (!done.isEmpty()) {
+            objectDeletionRepository.deleteAllByIdInBatch(done);
+            deleted.increment(done.size());
+        }
+        return claimed.size();
+    }
+
+    // initialBackoff * 2^(attempts - 1), не больше maxBackoff
+    private Duration backoff(int attempts) {
+        Duration backoff = properties.getInitialBackoff().multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(properties.getMaxBackoff()) > 0 ? properties.getMaxBackoff() : backoff;
+    }
+
+    private void measureBacklog() {
+        try {
+            Object[] backlog = objectDeletionRepository.backlog().get(0);
+            pending = ((Number) backlog[0]).longValue();
+            LocalDateTime oldest = (LocalDateTime) backlog[1];
+            lagSeconds = oldest == null ? 0 : Duration.between(oldest, LocalDateTime.now(ZoneOffset.UTC)).toMillis() / 1000.0;
+        } catch (RuntimeException e) {
+            log.warn("Failed to measure object deletion backlog: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package cloud.storage.fileservice.services.deletion;
+
+import cloud.storage.fileservice.models.ObjectDeletion;
+import cloud.storage.fileservice.repository.ObjectDeletionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Постановка объектов S3 в очередь на удаление. Вызывается в транзакции, удаляющей строки-владельцы:
+ * запись outbox фиксируется или откатывается вместе с ними, поэтому не бывает ни объекта-сироты,
+ * ни строки, указывающей на уже удаленный объект. Само удаление делает {@link ObjectDeletionDrainer}
+ */
+@Service
+@RequiredArgsConstructor
+public class ObjectDeletionOutbox {
+
+    private final ObjectDeletionRepository objectDeletionRepository;
+
+    public void enqueue(String s3Key) {
+        objectDeletionRepository.save(ObjectDeletion.builder().s3Key(s3Key).build());
+    }
+
+    public void enqueue(Collection<String> s3Keys) {
+        if (s3Keys.isEmpty()) return;
+        List<ObjectDeletion> deletions = new LinkedHashSet<>(s3Keys).stream()
+                .map(key -> ObjectDeletion.builder().s3Key(key).build())
+                .toList();
+        objectDeletionRepository.saveAll(deletions);
+    }
+}
@@ -4,22 +4,33 @@ import cloud.storage.fileservice.configuration.grpc.GrpcServerInterceptor;
 import cloud.storage.fileservice.customExceptions.grpcExceptions.GrpcAccessDeniedException;
 import cloud.storage.fileservice.customExceptions.grpcExceptions.GrpcFileNotFoundException;
 import cloud.storage.fileservice.models.File;
+import cloud.storage.fileservice.models.User;
 import cloud.storage.fileservice.repository.FileRepository;
-import cloud.storage.fileservice.services.S3Services.S3Service;
+import cloud.storage.fileservice.services.BlobService;
+import cloud.storage.fileservice.services.FileBatchDeleteService;
+import cloud.storage.fileservice.services.RenditionService;
+import cloud.storage.fileservice.services.UploadSessionService;
 import fileservice.File.*;
 import fileservice.FileServiceGrpc;
 import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.grpc.server.service.GrpcService;
 
 @RequiredArgsConstructor
 @GrpcService(interceptors = GrpcServerInterceptor.class)
 public class FileGrpcServer extends FileServiceGrpc.FileServiceImplBase {
 
+    private static final Logger log = LoggerFactory.getLogger(FileGrpcServer.class);
+
     private final FileRepository fileRepository;
-    private final S3Service s3Service;
+    private final BlobService blobService;
+    private final RenditionService renditionService;
+    private final FileBatchDeleteService fileBatchDeleteService;
+    private final UploadSessionService uploadSessionService;
 
     @Override
     @Transactional
@@ -38,8 +49,10 @@ public class FileGrpcServer extends FileServiceGrpc.FileServiceImplBase {
                 return;
             }
 
-            s3Service.deleteFile(file.getS3Key());
+            renditionService.deleteFor(file);
             fileRepository.delete(file);
+            fileRepository.flush();
+            blobService.release(file);
 
             DeleteFileResponse response = DeleteFileResponse.newBuilder()
                     .setSuccess(true)
@@ -63,4 +76,47 @@ public class FileGrpcServer extends FileServiceGrpc.FileServiceImplBase {
             );
         }
     }
+
+    /**
+     * Удаление файлов в папках удаляемого поддерева. Каждая пачка id папок обрабатывается по мере поступления,
+     * удаляются только файлы вызывающего пользователя (и его незавершенные загрузки в эти папки);
+     * объекты S3 уходят в очередь удаления
+     */
+    @Override
+    public StreamObserver<DeleteFilesInFoldersRequest> deleteFilesInFolders(StreamObserver<DeleteFilesInFoldersResponse> responseObserver) {
+        Long userId = GrpcServerInterceptor.USER_ID_CTX_KEY.get();
+        User user = User.builder().id(userId).build();
+
+        return new StreamObserver<>() {
+            private long deleted;
+            private boolean failed;
+
+            @Override
+            public void onNext(DeleteFilesInFoldersRequest request) {
+                if (failed) return;
+                try {
+                    uploadSessionService.abortSessionsInFolders(user, request.getFolderIdsList());
+                    deleted += fileBatchDeleteService.deleteInFolders(user, request.getFolderIdsList());
+                } catch (Exception e) {
+                    failed = true;
+                    log.error("Failed to delete files in folders for user {}: {}", userId, e.getMessage(), e);
+                    responseObserver.onError(
+                            Status.INTERNAL.withDescription("Unexpected error: " + e.getMessage()).asRuntimeException()
+                    );
+                }
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                log.warn("Folder files deletion stream cancelled by client after {} files: {}", deleted, t.getMessage());
+            }
+
+            @Override
+            public void onCompleted() {
+                if (failed) return;
+                responseObserver.onNext(DeleteFilesInFoldersResponse.newBuilder().setDeletedCount(deleted).build());
+                responseObserver.onCompleted();
+            }
+        };
+    }
 }
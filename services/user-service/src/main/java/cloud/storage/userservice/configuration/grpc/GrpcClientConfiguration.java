@@ -29,4 +29,10 @@ public class GrpcClientConfiguration {
     public FileServiceGrpc.FileServiceBlockingStub fileServiceStub(Channel channel) {
         return FileServiceGrpc.newBlockingStub(channel);
     }
+
+    // Асинхронный stub для потоковых вызовов (client-streaming)
+    @Bean
+    public FileServiceGrpc.FileServiceStub fileServiceAsyncStub(Channel channel) {
+        return FileServiceGrpc.newStub(channel);
+    }
 }
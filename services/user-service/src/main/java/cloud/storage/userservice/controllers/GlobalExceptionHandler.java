@@ -2,7 +2,11 @@ package cloud.storage.userservice.controllers;
 
 import cloud.storage.userservice.customExceptions.AccessDeniedException;
 import cloud.storage.userservice.customExceptions.FolderAlreadyExistsException;
+import cloud.storage.userservice.customExceptions.FolderDeleteJobNotFoundException;
 import cloud.storage.userservice.customExceptions.FolderNotFoundException;
+import cloud.storage.userservice.customExceptions.FolderTooDeepException;
+import cloud.storage.userservice.customExceptions.InvalidFolderMoveException;
+import cloud.storage.userservice.customExceptions.TooManyFolderDeletionsException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
@@ -28,12 +32,36 @@ public class GlobalExceptionHandler {
         return buildResponse(HttpStatus.BAD_REQUEST, ex.getMessage());
     }
 
+    @ExceptionHandler(FolderTooDeepException.class)
+    public ResponseEntity<Map<String, Object>> handleFolderTooDeep(FolderTooDeepException ex) {
+        log.warn("Folder too deep at {}: {}", Instant.now(), ex.getMessage());
+        return buildResponse(HttpStatus.BAD_REQUEST, ex.getMessage());
+    }
+
+    @ExceptionHandler(InvalidFolderMoveException.class)
+    public ResponseEntity<Map<String, Object>> handleInvalidFolderMove(InvalidFolderMoveException ex) {
+        log.warn("Invalid folder move at {}: {}", Instant.now(), ex.getMessage());
+        return buildResponse(HttpStatus.BAD_REQUEST, ex.getMessage());
+    }
+
     @ExceptionHandler(FolderNotFoundException.class)
     public ResponseEntity<Map<String, Object>> handleFolderNotFound(FolderNotFoundException ex) {
         log.warn("Folder not found at {}: {}", Instant.now(), ex.getMessage());
         return buildResponse(HttpStatus.NOT_FOUND, ex.getMessage());
     }
 
+    @ExceptionHandler(FolderDeleteJobNotFoundException.class)
+    public ResponseEntity<Map<String, Object>> handleFolderDeleteJobNotFound(FolderDeleteJobNotFoundException ex) {
+        log.warn("Folder delete job not found at {}: {}", Instant.now(), ex.getMessage());
+        return buildResponse(HttpStatus.NOT_FOUND, ex.getMessage());
+    }
+
+    @ExceptionHandler(TooManyFolderDeletionsException.class)
+    public ResponseEntity<Map<String, Object>> handleTooManyFolderDeletions(TooManyFolderDeletionsException ex) {
+        log.warn("Folder deletion rejected at {}: {}", Instant.now(), ex.getMessage());
+        return buildResponse(HttpStatus.TOO_MANY_REQUESTS, ex.getMessage());
+    }
+
     @ExceptionHandler(AccessDeniedException.class)
     public ResponseEntity<Map<String, Object>> handleAccessDenied(AccessDeniedException ex) {
         log.warn("Access denied at {}: {}", Instant.now(), ex.getMessage());
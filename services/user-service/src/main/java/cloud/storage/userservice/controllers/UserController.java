@@ -1,16 +1,19 @@
 package cloud.storage.userservice.controllers;
 
 import cloud.storage.userservice.dto.requests.CreateFolderRequest;
+import cloud.storage.userservice.dto.requests.DeleteFolderRequest;
+import cloud.storage.userservice.dto.requests.ReplaceFolderRequest;
 import cloud.storage.userservice.dto.response.CreateFolderResponse;
+import cloud.storage.userservice.dto.response.DeleteFolderResponse;
+import cloud.storage.userservice.dto.response.FolderDeleteJobResponse;
+import cloud.storage.userservice.dto.response.GetFolderInfoResponse;
+import cloud.storage.userservice.dto.response.ReplaceFolderResponse;
 import cloud.storage.userservice.services.UserService;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
 
 import java.security.Principal;
 
@@ -34,4 +37,53 @@ public class UserController {
         return ResponseEntity.ok(userService.createFolder(request, principal));
     }
 
+    /**
+     * Рекурсивное удаление папки вместе с вложенными папками и файлами. Выполняется в фоне:
+     * ответ 202 содержит id задачи для опроса статуса
+     */
+    @DeleteMapping("/folder/{folderId}")
+    public ResponseEntity<DeleteFolderResponse> deleteFolder(
+            @PathVariable Long folderId,
+            Principal principal
+    ){
+        log.info("Request on deleting folder {} by user {}", folderId, principal.getName());
+        return ResponseEntity.accepted().body(userService.deleteFolder(new DeleteFolderRequest(folderId), principal));
+    }
+
+    /**
+     * Статус фонового удаления папки
+     */
+    @GetMapping("/folder/delete/{jobId}")
+    public ResponseEntity<FolderDeleteJobResponse> getFolderDeleteJob(
+            @PathVariable String jobId,
+            Principal principal
+    ){
+        log.info("Request on folder delete job {} by user {}", jobId, principal.getName());
+        return ResponseEntity.ok(userService.getFolderDeleteJob(jobId, principal));
+    }
+
+    /**
+     * Перенос папки вместе с вложенными в другую папку (replacedFolderId == null — в корень)
+     */
+    @PatchMapping("/folder/move")
+    public ResponseEntity<ReplaceFolderResponse> replaceFolder(
+            @RequestBody ReplaceFolderRequest request,
+            Principal principal
+    ){
+        log.info("Request on moving folder {} by user {}", request.getReplaceFolderId(), principal.getName());
+        return ResponseEntity.ok(userService.replaceFolder(request, principal));
+    }
+
+    /**
+     * Папка с путем от корня и числом папок в поддереве
+     */
+    @GetMapping("/folder/{folderId}")
+    public ResponseEntity<GetFolderInfoResponse> getFolderInfo(
+            @PathVariable Long folderId,
+            Principal principal
+    ){
+        log.info("Request on folder {} info by user {}", folderId, principal.getName());
+        return ResponseEntity.ok(userService.getFolderInfo(folderId, principal));
+    }
+
 }
@@ -0,0 +1,11 @@
+package cloud.storage.userservice.customExceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class FolderDeleteJobNotFoundException extends RuntimeException {
+    public FolderDeleteJobNotFoundException(String message) {
+        super(message);
+    }
+}
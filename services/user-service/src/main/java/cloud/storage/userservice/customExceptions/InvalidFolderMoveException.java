@@ -0,0 +1,11 @@
+package cloud.storage.userservice.customExceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidFolderMoveException extends RuntimeException {
+    public InvalidFolderMoveException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package cloud.storage.userservice.customExceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class TooManyFolderDeletionsException extends RuntimeException {
+    public TooManyFolderDeletionsException(String message) {
+        super(message);
+    }
+}
@@ -7,4 +7,5 @@ import lombok.Data;
 @AllArgsConstructor
 public class DeleteFolderResponse {
     private String message;
+    private String jobId; // статус удаления: GET /api/v1/folder/delete/{jobId}
 }
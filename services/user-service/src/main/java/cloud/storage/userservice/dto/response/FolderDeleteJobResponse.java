@@ -0,0 +1,20 @@
+package cloud.storage.userservice.dto.response;
+
+import cloud.storage.userservice.models.FolderDeleteJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+public class FolderDeleteJobResponse {
+    private String jobId;
+    private Long folderId;
+    private FolderDeleteJobStatus status;
+    private Integer folderCount; // null — поддерево еще не разобрано
+    private Long deletedFiles; // null — файлы еще удаляются
+    private String error;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+}
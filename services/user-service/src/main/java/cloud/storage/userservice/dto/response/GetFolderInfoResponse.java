@@ -0,0 +1,22 @@
+package cloud.storage.userservice.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class GetFolderInfoResponse {
+    private Long id;
+    private String name;
+    private List<PathItem> path; // От корня до самой папки включительно
+    private long subtreeSize; // Число папок в поддереве, включая саму папку
+
+    @Data
+    @AllArgsConstructor
+    public static class PathItem {
+        private Long id;
+        private String name;
+    }
+}
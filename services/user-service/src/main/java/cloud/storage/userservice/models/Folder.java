@@ -8,7 +8,10 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 
-@Table(name = "folders")
+// Поддерево папки — диапазон строк индекса по path: побайтовое сравнение (collation "C") сохраняет порядок префиксов
+@Table(name = "folders", indexes = {
+        @Index(name = "idx_folders_path", columnList = "path")
+})
 @Entity
 @EntityListeners(AuditingEntityListener.class)
 @Getter
@@ -33,6 +36,9 @@ public class Folder {
     @JoinColumn(name = "parent_id")
     private Folder parent;
 
+    @Column(nullable = false, columnDefinition = "varchar(1024) COLLATE \"C\"")
+    private String path; // Материализованный путь из id от корня до самой папки: "/12/57/"
+
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
     @Builder.Default
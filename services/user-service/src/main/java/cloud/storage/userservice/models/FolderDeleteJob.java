@@ -0,0 +1,54 @@
+package cloud.storage.userservice.models;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Фоновая задача рекурсивного удаления папки: клиент получает ее id сразу и опрашивает статус
+ */
+@Table(name = "folder_delete_jobs", indexes = {
+        @Index(name = "idx_folder_delete_jobs_user_id", columnList = "user_id")
+})
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FolderDeleteJob {
+
+    @Id
+    @Column(length = 36)
+    private String id; // UUID задачи, выдается клиенту
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false, foreignKey = @ForeignKey(name = "fk_folder_delete_jobs_user_id"))
+    private User user;
+
+    @Column(name = "folder_id", nullable = false)
+    private Long folderId; // Корень удаляемого поддерева (после удаления строки folders уже нет, поэтому без FK)
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    @Builder.Default
+    private FolderDeleteJobStatus status = FolderDeleteJobStatus.PENDING;
+
+    @Column(name = "folder_count")
+    private Integer folderCount; // Папок в поддереве вместе с корнем
+
+    @Column(name = "deleted_files")
+    private Long deletedFiles;
+
+    @Column(length = 1024)
+    private String error;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now(ZoneOffset.UTC);
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
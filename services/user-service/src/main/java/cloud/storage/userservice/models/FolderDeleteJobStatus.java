@@ -0,0 +1,8 @@
+package cloud.storage.userservice.models;
+
+public enum FolderDeleteJobStatus {
+    PENDING,   // задача принята и ждет свободного обработчика
+    RUNNING,   // удаляются файлы и папки поддерева
+    COMPLETED, // поддерево удалено
+    FAILED     // удаление прервано, причина в error; запрос можно повторить
+}
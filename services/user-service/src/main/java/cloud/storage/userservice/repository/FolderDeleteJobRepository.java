@@ -0,0 +1,15 @@
+package cloud.storage.userservice.repository;
+
+import cloud.storage.userservice.models.FolderDeleteJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface FolderDeleteJobRepository extends JpaRepository<FolderDeleteJob, String> {
+    @Query("SELECT j FROM FolderDeleteJob j JOIN FETCH j.user WHERE j.id = :id")
+    Optional<FolderDeleteJob> findJobById(@Param("id") String id);
+}
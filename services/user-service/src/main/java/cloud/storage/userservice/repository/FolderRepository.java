@@ -3,10 +3,13 @@ package cloud.storage.userservice.repository;
 import cloud.storage.userservice.models.Folder;
 import cloud.storage.userservice.models.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -15,4 +18,37 @@ public interface FolderRepository extends JpaRepository<Folder, Long> {
     Optional<Folder> findFolderById(@Param("id") Long id);
 
     boolean existsByNameAndParentAndUser(String name, Folder parent, User user);
+
+    // Изменения дерева папок пользователя выполняются по одному: путь родителя не меняется, пока от него строится путь
+    @Query(value = "SELECT 1 FROM pg_advisory_xact_lock(:userId)", nativeQuery = true)
+    Integer lockHierarchy(@Param("userId") Long userId);
+
+    // Запросы по поддереву — диапазон [from, to) по индексу idx_folders_path, без рекурсии
+
+    @Query("SELECT f.id FROM Folder f WHERE f.path >= :from AND f.path < :to")
+    List<Long> findSubtreeIds(@Param("from") String from, @Param("to") String to);
+
+    @Query("SELECT COUNT(f) FROM Folder f WHERE f.path >= :from AND f.path < :to")
+    long countSubtree(@Param("from") String from, @Param("to") String to);
+
+    @Query("SELECT MAX(LENGTH(f.path)) FROM Folder f WHERE f.path >= :from AND f.path < :to")
+    Integer findMaxPathLengthInSubtree(@Param("from") String from, @Param("to") String to);
+
+    // Предки по id из пути, от корня вглубь
+    @Query("SELECT f FROM Folder f WHERE f.id IN :ids ORDER BY LENGTH(f.path)")
+    List<Folder> findAllByIdOrderByDepth(@Param("ids") Collection<Long> ids);
+
+    // Перенос поддерева: префикс пути заменяется у всех папок одним UPDATE
+    @Modifying
+    @Query(value = """
+            UPDATE folders SET path = :newPath || substring(path from :oldLength + 1)
+            WHERE path >= :from AND path < :to
+            """, nativeQuery = true)
+    int replacePathPrefix(@Param("from") String from, @Param("to") String to,
+                          @Param("oldLength") int oldLength, @Param("newPath") String newPath);
+
+    // Все поддерево одним DELETE: ссылки parent_id проверяются в конце оператора, порядок строк не важен
+    @Modifying
+    @Query("DELETE FROM Folder f WHERE f.path >= :from AND f.path < :to")
+    int deleteSubtree(@Param("from") String from, @Param("to") String to);
 }
@@ -0,0 +1,143 @@
+package cloud.storage.userservice.services;
+
+import cloud.storage.userservice.customExceptions.AccessDeniedException;
+import cloud.storage.userservice.customExceptions.FolderDeleteJobNotFoundException;
+import cloud.storage.userservice.customExceptions.TooManyFolderDeletionsException;
+import cloud.storage.userservice.models.Folder;
+import cloud.storage.userservice.models.FolderDeleteJob;
+import cloud.storage.userservice.models.FolderDeleteJobStatus;
+import cloud.storage.userservice.models.User;
+import cloud.storage.userservice.repository.FolderDeleteJobRepository;
+import cloud.storage.userservice.repository.FolderRepository;
+import cloud.storage.userservice.services.grpc.FileGrpcClient;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.concurrent.DelegatingSecurityContextRunnable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Рекурсивное удаление папки фоновой задачей. Поддерево выбирается одним запросом по материализованному пути,
+ * его id одним потоковым gRPC-вызовом уходят в file-service, который удаляет файлы пачками и ставит
+ * объекты S3 в очередь удаления. После этого поддерево папок удаляется одним DELETE.
+ */
+@Service
+public class FolderDeleteService {
+
+    private static final Logger log = LoggerFactory.getLogger(FolderDeleteService.class);
+
+    private static final int WORKERS = 2;
+    private static final int QUEUE_CAPACITY = 100;
+    // Во время удаления файлов в папку поддерева могли загрузить новый файл — тогда файлы удаляются повторно
+    private static final int MAX_ATTEMPTS = 3;
+    private static final int MAX_ERROR_LENGTH = 1024;
+
+    private final FolderRepository folderRepository;
+    private final FolderDeleteJobRepository folderDeleteJobRepository;
+    private final FolderHierarchyService folderHierarchyService;
+    private final FileGrpcClient fileGrpcClient;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor executor;
+
+    public FolderDeleteService(FolderRepository folderRepository, FolderDeleteJobRepository folderDeleteJobRepository,
+                               FolderHierarchyService folderHierarchyService, FileGrpcClient fileGrpcClient,
+                               TransactionTemplate transactionTemplate) {
+        this.folderRepository = folderRepository;
+        this.folderDeleteJobRepository = folderDeleteJobRepository;
+        this.folderHierarchyService = folderHierarchyService;
+        this.fileGrpcClient = fileGrpcClient;
+        this.transactionTemplate = transactionTemplate;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                WORKERS, WORKERS, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                task -> new Thread(task, "folder-delete-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Постановка удаления в очередь. Задача выполняется с контекстом безопасности запроса:
+     * JWT пользователя передается в file-service так же, как при синхронных вызовах
+     */
+    public FolderDeleteJob start(User user, Folder folder) {
+        FolderDeleteJob job = folderDeleteJobRepository.save(FolderDeleteJob.builder()
+                .id(UUID.randomUUID().toString())
+                .user(user)
+                .folderId(folder.getId())
+                .build());
+        try {
+            executor.execute(new DelegatingSecurityContextRunnable(() -> run(job)));
+        } catch (RejectedExecutionException e) {
+            finish(job, FolderDeleteJobStatus.FAILED, "Too many folder deletions in progress");
+            throw new TooManyFolderDeletionsException("Too many folder deletions in progress, retry later");
+        }
+        return job;
+    }
+
+    public FolderDeleteJob getJob(User user, String jobId) {
+        FolderDeleteJob job = folderDeleteJobRepository.findJobById(jobId)
+                .orElseThrow(() -> new FolderDeleteJobNotFoundException("Folder delete job not found"));
+        if (!job.getUser().getId().equals(user.getId())) throw new AccessDeniedException("Access denied");
+        return job;
+    }
+
+    private void run(FolderDeleteJob job) {
+        try {
+            job.setStatus(FolderDeleteJobStatus.RUNNING);
+            folderDeleteJobRepository.save(job);
+
+            long deletedFiles = 0;
+            for (int attempt = 1; ; attempt++) {
+                Folder root = folderRepository.findById(job.getFolderId()).orElse(null);
+                if (root == null) break; // папку уже удалили
+                List<Long> folderIds = folderHierarchyService.subtreeIds(root);
+                job.setFolderCount(Math.max(folderIds.size(), job.getFolderCount() == null ? 0 : job.getFolderCount()));
+                deletedFiles += fileGrpcClient.deleteFilesInFolders(folderIds);
+                job.setDeletedFiles(deletedFiles);
+                folderDeleteJobRepository.save(job);
+                try {
+                    transactionTemplate.executeWithoutResult(status -> deleteSubtree(job));
+                    break;
+                } catch (DataIntegrityViolationException e) {
+                    // В поддерево успели добавить файл или папку
+                    if (attempt >= MAX_ATTEMPTS) throw e;
+                    log.info("Folder {} changed during deletion, retrying (attempt {})", job.getFolderId(), attempt + 1);
+                }
+            }
+            finish(job, FolderDeleteJobStatus.COMPLETED, null);
+            log.info("Folder {} deleted: {} folders, {} files", job.getFolderId(), job.getFolderCount(), job.getDeletedFiles());
+        } catch (Exception e) {
+            log.error("Failed to delete folder {}: {}", job.getFolderId(), e.getMessage(), e);
+            String error = String.valueOf(e.getMessage());
+            finish(job, FolderDeleteJobStatus.FAILED, error.length() > MAX_ERROR_LENGTH ? error.substring(0, MAX_ERROR_LENGTH) : error);
+        }
+    }
+
+    // Путь перечитывается под блокировкой дерева: папку могли перенести, пока удалялись файлы
+    private void deleteSubtree(FolderDeleteJob job) {
+        folderHierarchyService.lock(job.getUser());
+        folderRepository.findById(job.getFolderId()).ifPresent(folderHierarchyService::deleteSubtree);
+    }
+
+    private void finish(FolderDeleteJob job, FolderDeleteJobStatus status, String error) {
+        job.setStatus(status);
+        job.setError(error);
+        job.setFinishedAt(LocalDateTime.now(ZoneOffset.UTC));
+        folderDeleteJobRepository.save(job);
+    }
+}
@@ -0,0 +1,119 @@
+package cloud.storage.userservice.services;
+
+import cloud.storage.userservice.customExceptions.FolderTooDeepException;
+import cloud.storage.userservice.customExceptions.InvalidFolderMoveException;
+import cloud.storage.userservice.models.Folder;
+import cloud.storage.userservice.models.User;
+import cloud.storage.userservice.repository.FolderRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Дерево папок на материализованном пути: у каждой папки хранится цепочка id от корня ("/12/57/").
+ * Поддерево — все пути с префиксом пути папки, то есть один диапазон индекса, поэтому выборка,
+ * подсчет и удаление поддерева не зависят от глубины. Путь до корня читается из самой строки.
+ * Методы, меняющие дерево, вызываются в транзакции после {@link #lock(User)}.
+ */
+@Service
+@RequiredArgsConstructor
+public class FolderHierarchyService {
+
+    public static final int MAX_PATH_LENGTH = 1024;
+
+    private static final String SEPARATOR = "/";
+    // Самый длинный сегмент пути: id типа bigint (19 цифр) и разделитель
+    private static final int MAX_SEGMENT_LENGTH = 20;
+
+    private final FolderRepository folderRepository;
+
+    public void lock(User user) {
+        folderRepository.lockHierarchy(user.getId());
+    }
+
+    /**
+     * Новая папка. id известен только после INSERT, поэтому путь дописывается вторым шагом в той же транзакции
+     */
+    public Folder create(User user, String name, Folder parent) {
+        String parentPath = parent == null ? SEPARATOR : parent.getPath();
+        if (parentPath.length() + MAX_SEGMENT_LENGTH > MAX_PATH_LENGTH) {
+            throw new FolderTooDeepException("Folder nesting is too deep");
+        }
+        Folder folder = folderRepository.saveAndFlush(Folder.builder()
+                .user(user)
+                .name(name)
+                .parent(parent)
+                .path(parentPath)
+                .build());
+        folder.setPath(childPath(parentPath, folder.getId()));
+        return folder;
+    }
+
+    /**
+     * Перенос папки вместе с поддеревом: пути всех вложенных папок переписываются одним UPDATE
+     */
+    public void move(Folder folder, Folder newParent) {
+        if (newParent != null && isInside(newParent, folder)) {
+            throw new InvalidFolderMoveException("Folder cannot be moved into itself or its subfolder");
+        }
+        String oldPath = folder.getPath();
+        String newPath = childPath(newParent == null ? SEPARATOR : newParent.getPath(), folder.getId());
+        if (newPath.length() > oldPath.length()) {
+            int deepest = folderRepository.findMaxPathLengthInSubtree(oldPath, upperBound(oldPath));
+            if (deepest - oldPath.length() + newPath.length() > MAX_PATH_LENGTH) {
+                throw new FolderTooDeepException("Folder nesting is too deep");
+            }
+        }
+        folderRepository.replacePathPrefix(oldPath, upperBound(oldPath), oldPath.length(), newPath);
+        // Тот же путь, что записал UPDATE: при сбросе сущности значение не разойдется с таблицей
+        folder.setPath(newPath);
+        folder.setParent(newParent);
+    }
+
+    public int deleteSubtree(Folder folder) {
+        return folderRepository.deleteSubtree(folder.getPath(), upperBound(folder.getPath()));
+    }
+
+    /**
+     * id папки и всех вложенных на любую глубину
+     */
+    public List<Long> subtreeIds(Folder folder) {
+        return folderRepository.findSubtreeIds(folder.getPath(), upperBound(folder.getPath()));
+    }
+
+    /**
+     * Число папок в поддереве, включая саму папку
+     */
+    public long subtreeSize(Folder folder) {
+        return folderRepository.countSubtree(folder.getPath(), upperBound(folder.getPath()));
+    }
+
+    /**
+     * Цепочка папок от корня до самой папки включительно
+     */
+    public List<Folder> pathToRoot(Folder folder) {
+        List<Long> ids = Arrays.stream(folder.getPath().split(SEPARATOR))
+                .filter(segment -> !segment.isEmpty())
+                .map(Long::valueOf)
+                .toList();
+        return folderRepository.findAllByIdOrderByDepth(ids);
+    }
+
+    /**
+     * Лежит ли папка inner внутри outer (или совпадает с ней) — сравнение путей без запросов
+     */
+    public boolean isInside(Folder inner, Folder outer) {
+        return inner.getPath().startsWith(outer.getPath());
+    }
+
+    private String childPath(String parentPath, Long id) {
+        return parentPath + id + SEPARATOR;
+    }
+
+    // Путь заканчивается на '/', следующий за ним символ — '0': в [path, upperBound) попадают ровно пути с префиксом path
+    private String upperBound(String path) {
+        return path.substring(0, path.length() - 1) + (char) (SEPARATOR.charAt(0) + 1);
+    }
+}
@@ -1,10 +1,20 @@
 package cloud.storage.userservice.services;
 
 import cloud.storage.userservice.dto.requests.CreateFolderRequest;
+import cloud.storage.userservice.dto.requests.DeleteFolderRequest;
+import cloud.storage.userservice.dto.requests.ReplaceFolderRequest;
 import cloud.storage.userservice.dto.response.CreateFolderResponse;
+import cloud.storage.userservice.dto.response.DeleteFolderResponse;
+import cloud.storage.userservice.dto.response.FolderDeleteJobResponse;
+import cloud.storage.userservice.dto.response.GetFolderInfoResponse;
+import cloud.storage.userservice.dto.response.ReplaceFolderResponse;
 
 import java.security.Principal;
 
 public interface UserService {
     CreateFolderResponse createFolder(CreateFolderRequest request, Principal principal);
+    DeleteFolderResponse deleteFolder(DeleteFolderRequest request, Principal principal);
+    FolderDeleteJobResponse getFolderDeleteJob(String jobId, Principal principal);
+    ReplaceFolderResponse replaceFolder(ReplaceFolderRequest request, Principal principal);
+    GetFolderInfoResponse getFolderInfo(Long folderId, Principal principal);
 }
@@ -1,38 +1,95 @@
 package cloud.storage.userservice.services;
 
+import cloud.storage.userservice.customExceptions.FolderNotFoundException;
 import cloud.storage.userservice.dto.requests.CreateFolderRequest;
+import cloud.storage.userservice.dto.requests.DeleteFolderRequest;
+import cloud.storage.userservice.dto.requests.ReplaceFolderRequest;
 import cloud.storage.userservice.dto.response.CreateFolderResponse;
+import cloud.storage.userservice.dto.response.DeleteFolderResponse;
+import cloud.storage.userservice.dto.response.FolderDeleteJobResponse;
+import cloud.storage.userservice.dto.response.GetFolderInfoResponse;
+import cloud.storage.userservice.dto.response.ReplaceFolderResponse;
 import cloud.storage.userservice.models.Folder;
+import cloud.storage.userservice.models.FolderDeleteJob;
 import cloud.storage.userservice.models.User;
-import cloud.storage.userservice.repository.FolderRepository;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
 import java.security.Principal;
+import java.util.List;
+import java.util.Objects;
 
 @Service
 @RequiredArgsConstructor
 public class UserServiceImpl implements UserService{
 
-    private final FolderRepository folderRepository;
-
     private final HelperService helperService;
 
+    private final FolderHierarchyService folderHierarchyService;
+
+    private final FolderDeleteService folderDeleteService;
+
     @Override
     @Transactional
     public CreateFolderResponse createFolder(CreateFolderRequest request, Principal principal) {
         User user = helperService.validateAndGetUser(principal);
+        folderHierarchyService.lock(user);
 
         Folder parentFolder = helperService.findFolderById(user, request.getParentId());
         helperService.validateFolderNameUniq(user, request.getFolderName(), parentFolder);
 
-        folderRepository.save(Folder.builder()
-                .user(user)
-                .name(request.getFolderName())
-                .parent(parentFolder)
-                .build());
+        folderHierarchyService.create(user, request.getFolderName(), parentFolder);
 
         return new CreateFolderResponse("Folder created successfully");
     }
+
+    @Override
+    public DeleteFolderResponse deleteFolder(DeleteFolderRequest request, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        Folder folder = helperService.findFolderById(user, request.getDeleteFolderId());
+        if (folder == null) throw new FolderNotFoundException("Root folder cannot be deleted");
+
+        FolderDeleteJob job = folderDeleteService.start(user, folder);
+        return new DeleteFolderResponse("Folder deletion started", job.getId());
+    }
+
+    @Override
+    public FolderDeleteJobResponse getFolderDeleteJob(String jobId, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        FolderDeleteJob job = folderDeleteService.getJob(user, jobId);
+        return new FolderDeleteJobResponse(job.getId(), job.getFolderId(), job.getStatus(), job.getFolderCount(),
+                job.getDeletedFiles(), job.getError(), job.getCreatedAt(), job.getFinishedAt());
+    }
+
+    @Override
+    @Transactional
+    public ReplaceFolderResponse replaceFolder(ReplaceFolderRequest request, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        folderHierarchyService.lock(user);
+
+        Folder folder = helperService.findFolderById(user, request.getReplaceFolderId());
+        if (folder == null) throw new FolderNotFoundException("Root folder cannot be moved");
+        Folder newParent = helperService.findFolderById(user, request.getReplacedFolderId());
+        Long currentParentId = folder.getParent() == null ? null : folder.getParent().getId();
+        if (Objects.equals(currentParentId, request.getReplacedFolderId())) {
+            return new ReplaceFolderResponse("Folder moved successfully");
+        }
+        helperService.validateFolderNameUniq(user, folder.getName(), newParent);
+
+        folderHierarchyService.move(folder, newParent);
+        return new ReplaceFolderResponse("Folder moved successfully");
+    }
+
+    @Override
+    public GetFolderInfoResponse getFolderInfo(Long folderId, Principal principal) {
+        User user = helperService.validateAndGetUser(principal);
+        Folder folder = helperService.findFolderById(user, folderId);
+        if (folder == null) throw new FolderNotFoundException("Folder not found");
+
+        List<GetFolderInfoResponse.PathItem> path = folderHierarchyService.pathToRoot(folder).stream()
+                .map(item -> new GetFolderInfoResponse.PathItem(item.getId(), item.getName()))
+                .toList();
+        return new GetFolderInfoResponse(folder.getId(), folder.getName(), path, folderHierarchyService.subtreeSize(folder));
+    }
 }
@@ -5,17 +5,29 @@ import cloud.storage.userservice.customExceptions.grpcExceptions.GrpcAccessDenie
 import fileservice.FileServiceGrpc;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import fileservice.File.*;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class FileGrpcClient {
+    // id папок в одном сообщении потока
+    private static final int FOLDER_IDS_PER_MESSAGE = 1000;
+    // Предельное время удаления файлов поддерева (десятки тысяч файлов удаляются пачками в file-service)
+    private static final long DELETE_FOLDERS_DEADLINE_MINUTES = 30;
+
     private final FileServiceGrpc.FileServiceBlockingStub fileStub;
+    private final FileServiceGrpc.FileServiceStub fileAsyncStub;
 
     public DeleteFileResponse deleteFile(Long fileId) {
         DeleteFileRequest request = DeleteFileRequest.newBuilder()
@@ -46,4 +58,51 @@ public class FileGrpcClient {
             throw new RuntimeException("Cannot fetch file", e);
         }
     }
+
+    /**
+     * Удаление всех файлов пользователя в папках одним потоковым вызовом вместо вызова на каждый файл.
+     * Блокирует до ответа file-service; возвращает число удаленных файлов
+     */
+    public long deleteFilesInFolders(List<Long> folderIds) {
+        CompletableFuture<DeleteFilesInFoldersResponse> result = new CompletableFuture<>();
+        StreamObserver<DeleteFilesInFoldersRequest> requests = fileAsyncStub
+                .withDeadlineAfter(DELETE_FOLDERS_DEADLINE_MINUTES, TimeUnit.MINUTES)
+                .deleteFilesInFolders(new StreamObserver<>() {
+                    @Override
+                    public void onNext(DeleteFilesInFoldersResponse response) {
+                        result.complete(response);
+                    }
+
+                    @Override
+                    public void onError(Throwable t) {
+                        result.completeExceptionally(t);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        result.completeExceptionally(new IllegalStateException("File service completed without response"));
+                    }
+                });
+
+        try {
+            for (int from = 0; from < folderIds.size(); from += FOLDER_IDS_PER_MESSAGE) {
+                List<Long> chunk = folderIds.subList(from, Math.min(folderIds.size(), from + FOLDER_IDS_PER_MESSAGE));
+                requests.onNext(DeleteFilesInFoldersRequest.newBuilder().addAllFolderIds(chunk).build());
+            }
+            requests.onCompleted();
+        } catch (RuntimeException e) {
+            requests.onError(e);
+            throw e;
+        }
+
+        try {
+            return result.get().getDeletedCount();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while deleting files in folders", e);
+        } catch (ExecutionException e) {
+            log.error("Failed to delete files in {} folders: {}", folderIds.size(), e.getCause().getMessage());
+            throw new RuntimeException("Cannot delete files in folders: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
 }